@@ -0,0 +1,368 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Rendered barcodes stored as PNG files in the app's cache directory,
+ * so a cold start of LoyaltyCardViewActivity can decode the image
+ * instead of encoding the barcode again.
+ *
+ * Files are named after the loyalty card's database id and a hash of
+ * everything the image depends on, so a changed card id or format can
+ * never be served a stale image. The directory is versioned; bump
+ * VERSION whenever the rendering itself changes. The oldest entries are
+ * evicted once the total size exceeds the limit.
+ */
+public class BarcodeDiskCache
+{
+    private static final String TAG = "Catima";
+
+    static final int VERSION = 1;
+    static final String DIRECTORY_PREFIX = "barcodes-v";
+    static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final String PREFERENCES = "barcode_cache";
+    private static final String VIEW_WIDTH = "viewWidth";
+    private static final String VIEW_HEIGHT = "viewHeight";
+
+    private static BarcodeDiskCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+    private final SharedPreferences preferences;
+
+    BarcodeDiskCache(Context context, File cacheRoot, long maxBytes)
+    {
+        this.directory = new File(cacheRoot, DIRECTORY_PREFIX + VERSION);
+        this.maxBytes = maxBytes;
+        this.preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized BarcodeDiskCache getInstance(Context context)
+    {
+        if(instance == null)
+        {
+            Context appContext = context.getApplicationContext();
+            instance = new BarcodeDiskCache(appContext, appContext.getCacheDir(), DEFAULT_MAX_BYTES);
+
+            // The first instance is usually requested on the main thread
+            final BarcodeDiskCache created = instance;
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    created.removeOldVersions();
+                }
+            });
+        }
+
+        return instance;
+    }
+
+    /**
+     * Deletes the directories of other versions, walking them on the
+     * calling thread.
+     */
+    void removeOldVersions()
+    {
+        File[] directories = directory.getParentFile().listFiles();
+        if(directories == null)
+        {
+            return;
+        }
+
+        for(File old : directories)
+        {
+            if(old.isDirectory() && old.getName().startsWith(DIRECTORY_PREFIX)
+                    && !old.equals(directory))
+            {
+                deleteFiles(old.listFiles());
+                if(!old.delete())
+                {
+                    Log.w(TAG, "Failed to remove old barcode cache " + old);
+                }
+            }
+        }
+    }
+
+    static String hash(String cardId, BarcodeFormat format, int width, int height)
+    {
+        String key = cardId + '\0' + format.name() + '\0' + width + 'x' + height;
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for(byte b : bytes)
+            {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            // SHA-1 is always available on Android
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File fileFor(int loyaltyCardId, String cardId, BarcodeFormat format, int width, int height)
+    {
+        return new File(directory, loyaltyCardId + "_" + hash(cardId, format, width, height) + ".png");
+    }
+
+    public synchronized boolean contains(int loyaltyCardId, String cardId, BarcodeFormat format, int width, int height)
+    {
+        return fileFor(loyaltyCardId, cardId, format, width, height).isFile();
+    }
+
+    /**
+     * Returns the cached image, or null if it has not been rendered
+     * yet or cannot be decoded.
+     */
+    public synchronized Bitmap get(int loyaltyCardId, String cardId, BarcodeFormat format, int width, int height)
+    {
+        File file = fileFor(loyaltyCardId, cardId, format, width, height);
+        if(!file.isFile())
+        {
+            return null;
+        }
+
+        // Barcodes are only black and white, see BarcodeImageWriterTask.render()
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if(bitmap == null)
+        {
+            Log.w(TAG, "Removing undecodable barcode cache entry " + file.getName());
+            file.delete();
+            return null;
+        }
+
+        // Keep recently used entries from being evicted first
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    public synchronized void put(int loyaltyCardId, String cardId, BarcodeFormat format, int width, int height, Bitmap bitmap)
+    {
+        if(!directory.isDirectory() && !directory.mkdirs())
+        {
+            Log.w(TAG, "Failed to create barcode cache directory " + directory);
+            return;
+        }
+
+        File file = fileFor(loyaltyCardId, cardId, format, width, height);
+        File tmp = new File(directory, file.getName() + ".tmp");
+
+        try(OutputStream out = new FileOutputStream(tmp))
+        {
+            if(!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out))
+            {
+                throw new IOException("Bitmap could not be compressed");
+            }
+        }
+        catch(IOException e)
+        {
+            Log.w(TAG, "Failed to write barcode cache entry " + file.getName(), e);
+            tmp.delete();
+            return;
+        }
+
+        // Write then rename, so a reader never sees a partial file
+        if(!tmp.renameTo(file))
+        {
+            Log.w(TAG, "Failed to store barcode cache entry " + file.getName());
+            tmp.delete();
+            return;
+        }
+
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Removes every image of the given loyalty card, for when it is
+     * deleted or its card id or barcode format changed.
+     */
+    public synchronized void invalidate(int loyaltyCardId)
+    {
+        final String prefix = loyaltyCardId + "_";
+        deleteFiles(directory.listFiles((dir, name) -> name.startsWith(prefix)));
+    }
+
+    public synchronized long getSize()
+    {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if(files != null)
+        {
+            for(File file : files)
+            {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    synchronized void trimToSize(long limit)
+    {
+        File[] files = directory.listFiles();
+        if(files == null)
+        {
+            return;
+        }
+
+        long size = 0;
+        for(File file : files)
+        {
+            size += file.length();
+        }
+
+        if(size <= limit)
+        {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File a, File b)
+            {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        for(File file : files)
+        {
+            if(size <= limit)
+            {
+                break;
+            }
+
+            long length = file.length();
+            if(file.delete())
+            {
+                size -= length;
+            }
+        }
+    }
+
+    private static void deleteFiles(File[] files)
+    {
+        if(files == null)
+        {
+            return;
+        }
+
+        for(File file : files)
+        {
+            if(!file.delete())
+            {
+                Log.w(TAG, "Failed to delete barcode cache file " + file);
+            }
+        }
+    }
+
+    /**
+     * Records the size of the barcode view in LoyaltyCardViewActivity,
+     * which is the size cards are pre-rendered at when saved.
+     */
+    public void setViewSize(int width, int height)
+    {
+        if(width <= 0 || height <= 0)
+        {
+            return;
+        }
+
+        if(preferences.getInt(VIEW_WIDTH, 0) != width || preferences.getInt(VIEW_HEIGHT, 0) != height)
+        {
+            preferences.edit()
+                    .putInt(VIEW_WIDTH, width)
+                    .putInt(VIEW_HEIGHT, height)
+                    .apply();
+        }
+    }
+
+    /**
+     * The last size recorded with setViewSize(), or null if the card view
+     * has never shown a barcode.
+     */
+    public int[] getViewSize()
+    {
+        int viewWidth = preferences.getInt(VIEW_WIDTH, 0);
+        int viewHeight = preferences.getInt(VIEW_HEIGHT, 0);
+
+        if(viewWidth <= 0 || viewHeight <= 0)
+        {
+            return null;
+        }
+
+        return new int[]{viewWidth, viewHeight};
+    }
+
+    /**
+     * Renders the barcode at the last known view size on a background
+     * thread and stores it, so the next view of the card does not need
+     * to encode it. Does nothing if the view has never been shown.
+     */
+    public void prerender(final int loyaltyCardId, final String cardId, final BarcodeFormat format)
+    {
+        int[] viewSize = getViewSize();
+        if(viewSize == null || cardId.isEmpty())
+        {
+            return;
+        }
+
+        final int[] size = BarcodeGenerator.getTargetSize(format, viewSize[0], viewSize[1]);
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if(contains(loyaltyCardId, cardId, format, size[0], size[1]))
+                {
+                    return;
+                }
+
+                try
+                {
+                    Bitmap bitmap = BarcodeImageWriterTask.render(cardId, format, size[0], size[1]);
+                    put(loyaltyCardId, cardId, format, size[0], size[1], bitmap);
+                    Log.d(TAG, "Pre-rendered barcode for card " + loyaltyCardId);
+                }
+                catch(WriterException e)
+                {
+                    Log.w(TAG, "Failed to pre-render barcode of type " + format + ": " + cardId, e);
+                }
+                catch(OutOfMemoryError e)
+                {
+                    Log.w(TAG, "Insufficient memory to pre-render barcode", e);
+                }
+            }
+        });
+    }
+}
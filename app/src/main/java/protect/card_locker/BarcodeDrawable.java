@@ -0,0 +1,266 @@
+package protect.card_locker;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Draws a barcode straight from its BitMatrix, as rectangles for each run
+ * of black modules, at whatever bounds it is given. There is no backing
+ * bitmap, so resizing or rotating costs nothing but a redraw.
+ *
+ * Modules are snapped to whole pixels when there is room for it, which
+ * keeps every bar the same width like nearest neighbour scaling would.
+ * 2D codes keep their aspect ratio, 1D codes are stretched to the full
+ * height.
+ *
+ * Below one pixel per module a 1D code is squeezed so that every bar and
+ * space still gets at least one pixel. A 2D code, or a 1D code with more
+ * runs than pixels, is drawn at one pixel per module and cut off by the
+ * bounds instead, as dropping a run would change what the barcode reads.
+ */
+public class BarcodeDrawable extends Drawable
+{
+    private final int matrixWidth;
+    private final int matrixHeight;
+    private final boolean stretchHeight;
+
+    // Start and end module of each black run, per row
+    private final int[][] runs;
+
+    // 1D codes only: the module where each bar or space starts, followed by
+    // the width of the code, whether the first one is a bar, and the pixel
+    // edges of the last draw
+    private final int[] boundaries;
+    private final boolean startsBlack;
+    private final int[] edges;
+
+    private final Paint blackPaint = new Paint();
+    private final Paint whitePaint = new Paint();
+    private final Rect rect = new Rect();
+
+    /**
+     * @param matrix the encoded barcode, ideally at one pixel per module
+     * @param oneDimensional if every row of the matrix is the same, in which
+     *                       case only the first row is used
+     */
+    public BarcodeDrawable(BitMatrix matrix, boolean oneDimensional)
+    {
+        matrixWidth = matrix.getWidth();
+        matrixHeight = oneDimensional ? 1 : matrix.getHeight();
+        stretchHeight = oneDimensional;
+
+        runs = new int[matrixHeight][];
+        int[] rowRuns = new int[matrixWidth + 1];
+
+        for(int y = 0; y < matrixHeight; y++)
+        {
+            int count = 0;
+            int x = 0;
+            while(x < matrixWidth)
+            {
+                if(!matrix.get(x, y))
+                {
+                    x++;
+                    continue;
+                }
+
+                int end = x + 1;
+                while(end < matrixWidth && matrix.get(end, y))
+                {
+                    end++;
+                }
+
+                rowRuns[count++] = x;
+                rowRuns[count++] = end;
+                x = end;
+            }
+
+            runs[y] = new int[count];
+            System.arraycopy(rowRuns, 0, runs[y], 0, count);
+        }
+
+        if(oneDimensional)
+        {
+            int[] row = runs[0];
+            startsBlack = row.length > 0 && row[0] == 0;
+
+            int count = 0;
+            int[] all = new int[row.length + 2];
+            all[count++] = 0;
+            for(int edge : row)
+            {
+                if(edge != 0 && edge != matrixWidth)
+                {
+                    all[count++] = edge;
+                }
+            }
+            all[count++] = matrixWidth;
+
+            boundaries = new int[count];
+            System.arraycopy(all, 0, boundaries, 0, count);
+            edges = new int[count];
+        }
+        else
+        {
+            boundaries = null;
+            startsBlack = false;
+            edges = null;
+        }
+
+        blackPaint.setColor(BarcodeGenerator.BLACK);
+        whitePaint.setColor(BarcodeGenerator.WHITE);
+    }
+
+    int getMatrixWidth()
+    {
+        return matrixWidth;
+    }
+
+    int getMatrixHeight()
+    {
+        return matrixHeight;
+    }
+
+    /**
+     * Rounds module boundaries to pixel edges at the given scale, moving an
+     * edge over where needed so that every run between two boundaries is at
+     * least one pixel. The last edge ends up at pixels, which must be at
+     * least the number of runs.
+     */
+    static void toPixelEdges(int[] boundaries, float scale, int pixels, int[] edges)
+    {
+        int runCount = boundaries.length - 1;
+
+        edges[0] = 0;
+        for(int index = 1; index < boundaries.length; index++)
+        {
+            int edge = Math.round(boundaries[index] * scale);
+            // A pixel for this run, and one for each run after it
+            edge = Math.max(edge, edges[index - 1] + 1);
+            edge = Math.min(edge, pixels - (runCount - index));
+            edges[index] = edge;
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas)
+    {
+        Rect bounds = getBounds();
+        if(bounds.isEmpty())
+        {
+            return;
+        }
+
+        if(stretchHeight)
+        {
+            drawBars(canvas, bounds);
+        }
+        else
+        {
+            drawModules(canvas, bounds);
+        }
+    }
+
+    private void drawBars(Canvas canvas, Rect bounds)
+    {
+        float scale = (float) bounds.width() / matrixWidth;
+
+        // Whole pixel modules where possible, so all bars are equally wide
+        if(scale >= 1)
+        {
+            scale = (float) Math.floor(scale);
+        }
+
+        int width = Math.round(matrixWidth * scale);
+        if(width < boundaries.length - 1)
+        {
+            // Not a pixel for every bar and space
+            scale = 1;
+            width = matrixWidth;
+        }
+
+        toPixelEdges(boundaries, scale, width, edges);
+
+        int left = bounds.left + (bounds.width() - width) / 2;
+
+        rect.set(left, bounds.top, left + width, bounds.bottom);
+        canvas.drawRect(rect, whitePaint);
+
+        for(int index = startsBlack ? 0 : 1; index < edges.length - 1; index += 2)
+        {
+            rect.set(left + edges[index], bounds.top, left + edges[index + 1], bounds.bottom);
+            canvas.drawRect(rect, blackPaint);
+        }
+    }
+
+    private void drawModules(Canvas canvas, Rect bounds)
+    {
+        float fit = Math.min((float) bounds.width() / matrixWidth, (float) bounds.height() / matrixHeight);
+
+        // Whole pixel modules, and never less than one pixel per module
+        int scale = Math.max(1, (int) Math.floor(fit));
+
+        int width = matrixWidth * scale;
+        int height = matrixHeight * scale;
+        int left = bounds.left + (bounds.width() - width) / 2;
+        int top = bounds.top + (bounds.height() - height) / 2;
+
+        rect.set(left, top, left + width, top + height);
+        canvas.drawRect(rect, whitePaint);
+
+        for(int y = 0; y < matrixHeight; y++)
+        {
+            int rowTop = top + y * scale;
+
+            int[] rowRuns = runs[y];
+            for(int index = 0; index < rowRuns.length; index += 2)
+            {
+                rect.set(left + rowRuns[index] * scale, rowTop,
+                        left + rowRuns[index + 1] * scale, rowTop + scale);
+                canvas.drawRect(rect, blackPaint);
+            }
+        }
+    }
+
+    // No intrinsic size, so an ImageView gives the drawable its full bounds
+    // instead of scaling a fixed size image
+    @Override
+    public int getIntrinsicWidth()
+    {
+        return -1;
+    }
+
+    @Override
+    public int getIntrinsicHeight()
+    {
+        return -1;
+    }
+
+    @Override
+    public void setAlpha(int alpha)
+    {
+        blackPaint.setAlpha(alpha);
+        whitePaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter)
+    {
+        blackPaint.setColorFilter(colorFilter);
+        whitePaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity()
+    {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,144 @@
+package protect.card_locker;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * Size bounded in-memory cache of rendered barcode bitmaps, so showing
+ * the same card again (onResume, rotation, fullscreen) does not need to
+ * encode the barcode again.
+ *
+ * Bitmaps in the cache are shared and must not be modified or recycled.
+ */
+public class BarcodeImageCache
+{
+    private static final String TAG = "Catima";
+
+    private static BarcodeImageCache instance;
+
+    private final LruCache<Key, Bitmap> cache;
+
+    /**
+     * Everything the rendered image depends on.
+     */
+    static final class Key
+    {
+        final String cardId;
+        final BarcodeFormat format;
+        final int width;
+        final int height;
+
+        Key(String cardId, BarcodeFormat format, int width, int height)
+        {
+            this.cardId = cardId;
+            this.format = format;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(this == o)
+            {
+                return true;
+            }
+            if(!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return width == other.width && height == other.height
+                    && format == other.format && cardId.equals(other.cardId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = cardId.hashCode();
+            result = 31 * result + format.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+    }
+
+    BarcodeImageCache(int maxBytes)
+    {
+        cache = new LruCache<Key, Bitmap>(maxBytes)
+        {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap)
+            {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    public static synchronized BarcodeImageCache getInstance()
+    {
+        if(instance == null)
+        {
+            // An eighth of the heap holds a handful of full size barcodes
+            long maxBytes = Runtime.getRuntime().maxMemory() / 8;
+            instance = new BarcodeImageCache((int) Math.min(maxBytes, Integer.MAX_VALUE));
+        }
+
+        return instance;
+    }
+
+    public Bitmap get(String cardId, BarcodeFormat format, int width, int height)
+    {
+        return cache.get(new Key(cardId, format, width, height));
+    }
+
+    public void put(String cardId, BarcodeFormat format, int width, int height, Bitmap bitmap)
+    {
+        cache.put(new Key(cardId, format, width, height), bitmap);
+    }
+
+    public int getHitCount()
+    {
+        return cache.hitCount();
+    }
+
+    public int getMissCount()
+    {
+        return cache.missCount();
+    }
+
+    public int size()
+    {
+        return cache.size();
+    }
+
+    public void clear()
+    {
+        cache.evictAll();
+    }
+
+    /**
+     * Releases memory according to a ComponentCallbacks2 trim level.
+     */
+    public void onTrimMemory(int level)
+    {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+        {
+            // We are likely to be killed soon, or the system is out of memory
+            cache.evictAll();
+        }
+        else if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+        {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+
+        Log.d(TAG, "Barcode cache trimmed for level " + level + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", size=" + size());
+    }
+}
@@ -1,6 +1,9 @@
 package protect.card_locker;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
 import android.util.Log;
 import android.view.View;
@@ -8,7 +11,6 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 
@@ -18,22 +20,26 @@ import java.lang.ref.WeakReference;
  * This task will generate a barcode and load it into an ImageView.
  * Only a weak reference of the ImageView is kept, so this class will not
  * prevent the ImageView from being garbage collected.
+ *
+ * By default the barcode is rendered into a cached bitmap sized for the
+ * ImageView. With drawFromMatrix() it is only encoded and shown as a
+ * BarcodeDrawable, which does not depend on the size of the view.
  */
-class BarcodeImageWriterTask extends AsyncTask<Void, Void, Bitmap>
+class BarcodeImageWriterTask extends AsyncTask<Void, Void, Drawable>
 {
     private static final String TAG = "Catima";
 
-    // When drawn in a smaller window 1D barcodes for some reason end up
-    // squished, whereas 2D barcodes look fine.
-    private static final int MAX_WIDTH_1D = 1500;
-    private static final int MAX_WIDTH_2D = 500;
-
     private final WeakReference<ImageView> imageViewReference;
     private final WeakReference<TextView> textViewReference;
+    private final Resources resources;
     private final String cardId;
     private final BarcodeFormat format;
     private final int imageHeight;
     private final int imageWidth;
+    private BarcodeDiskCache diskCache;
+    private int loyaltyCardId;
+    private boolean fromMatrix;
+    private int generation;
 
     BarcodeImageWriterTask(ImageView imageView, String cardIdString,
                            BarcodeFormat barcodeFormat, TextView textView)
@@ -41,24 +47,14 @@ class BarcodeImageWriterTask extends AsyncTask<Void, Void, Bitmap>
         // Use a WeakReference to ensure the ImageView can be garbage collected
         imageViewReference = new WeakReference<>(imageView);
         textViewReference = new WeakReference<>(textView);
+        resources = imageView.getResources();
 
         cardId = cardIdString;
         format = barcodeFormat;
 
-        final int MAX_WIDTH = getMaxWidth(format);
-
-        if(imageView.getWidth() < MAX_WIDTH)
-        {
-            imageHeight = imageView.getHeight();
-            imageWidth = imageView.getWidth();
-        }
-        else
-        {
-            // Scale down the image to reduce the memory needed to produce it
-            imageWidth = MAX_WIDTH;
-            double ratio = (double)MAX_WIDTH / (double)imageView.getWidth();
-            imageHeight = (int)(imageView.getHeight() * ratio);
-        }
+        int[] size = BarcodeGenerator.getTargetSize(format, imageView.getWidth(), imageView.getHeight());
+        imageWidth = size[0];
+        imageHeight = size[1];
     }
 
     BarcodeImageWriterTask(ImageView imageView, String cardIdString, BarcodeFormat barcodeFormat)
@@ -66,96 +62,156 @@ class BarcodeImageWriterTask extends AsyncTask<Void, Void, Bitmap>
         this(imageView, cardIdString, barcodeFormat, null);
     }
 
-    private int getMaxWidth(BarcodeFormat format)
+    /**
+     * Also read and write the rendered image to the disk cache, under the
+     * given loyalty card's database id.
+     */
+    BarcodeImageWriterTask setDiskCache(BarcodeDiskCache diskCache, int loyaltyCardId)
     {
-        switch(format)
+        this.diskCache = diskCache;
+        this.loyaltyCardId = loyaltyCardId;
+        return this;
+    }
+
+    /**
+     * Skip rasterizing and display a BarcodeDrawable instead, so the task
+     * can start before the ImageView is laid out.
+     */
+    BarcodeImageWriterTask drawFromMatrix()
+    {
+        fromMatrix = true;
+        return this;
+    }
+
+    /**
+     * Set by BarcodeRenderExecutor, to drop the result if a newer barcode
+     * was requested for the same view in the meantime.
+     */
+    void setGeneration(int generation)
+    {
+        this.generation = generation;
+    }
+
+    /**
+     * Encodes the card id and draws it into a bitmap of about the given size.
+     *
+     * The bitmap is RGB_565, which holds black and white exactly at half
+     * the memory of ARGB_8888, and is drawn at its final size row by row,
+     * so there is no full size pixel array or scaled copy in between.
+     */
+    static Bitmap render(String cardId, BarcodeFormat format, int width, int height) throws WriterException
+    {
+        return rasterize(BarcodeGenerator.encode(cardId, format, width, height), format, width, height);
+    }
+
+    private static Bitmap rasterize(BitMatrix bitMatrix, BarcodeFormat format, int width, int height)
+    {
+        int bitMatrixWidth = bitMatrix.getWidth();
+        int bitMatrixHeight = bitMatrix.getHeight();
+
+        // Scale without filtering if needed, see BarcodeGenerator.getScalingFactor()
+        int scalingFactor = Math.max(1, BarcodeGenerator.getScalingFactor(bitMatrix, width, height));
+
+        int bitmapWidth = bitMatrixWidth * scalingFactor;
+        Bitmap bitmap = Bitmap.createBitmap(bitmapWidth, bitMatrixHeight * scalingFactor,
+                Bitmap.Config.RGB_565);
+
+        // Every row of a 1D barcode is the same, so only convert the first
+        boolean sameRows = !BarcodeGenerator.is2D(format);
+        int[] row = new int[bitmapWidth];
+
+        for(int y = 0; y < bitMatrixHeight; y++)
         {
-            // 2D barcodes
-            case AZTEC:
-            case DATA_MATRIX:
-            case MAXICODE:
-            case PDF_417:
-            case QR_CODE:
-                return MAX_WIDTH_2D;
-
-            // 1D barcodes:
-            case CODABAR:
-            case CODE_39:
-            case CODE_93:
-            case CODE_128:
-            case EAN_8:
-            case EAN_13:
-            case ITF:
-            case UPC_A:
-            case UPC_E:
-            case RSS_14:
-            case RSS_EXPANDED:
-            case UPC_EAN_EXTENSION:
-            default:
-                return MAX_WIDTH_1D;
+            if(y == 0 || !sameRows)
+            {
+                BarcodeGenerator.toScaledRow(bitMatrix, y, scalingFactor, row);
+            }
+
+            for(int repeat = 0; repeat < scalingFactor; repeat++)
+            {
+                bitmap.setPixels(row, 0, bitmapWidth, 0, y * scalingFactor + repeat, bitmapWidth, 1);
+            }
         }
+
+        return bitmap;
     }
 
-    public Bitmap doInBackground(Void... params)
+    public Drawable doInBackground(Void... params)
     {
         if (cardId.isEmpty())
         {
             return null;
         }
 
-        MultiFormatWriter writer = new MultiFormatWriter();
-        BitMatrix bitMatrix;
-        try
+        if(fromMatrix)
         {
-            try
-            {
-                bitMatrix = writer.encode(cardId, format, imageWidth, imageHeight, null);
-            }
-            catch(Exception e)
-            {
-                // Cast a wider net here and catch any exception, as there are some
-                // cases where an encoder may fail if the data is invalid for the
-                // barcode type. If this happens, we want to fail gracefully.
-                throw new WriterException(e);
-            }
+            return encodeDrawable();
+        }
 
-            final int WHITE = 0xFFFFFFFF;
-            final int BLACK = 0xFF000000;
+        if(isCancelled())
+        {
+            return null;
+        }
 
-            int bitMatrixWidth = bitMatrix.getWidth();
-            int bitMatrixHeight = bitMatrix.getHeight();
+        Bitmap bitmap = renderBitmap();
+        return bitmap != null ? new BitmapDrawable(resources, bitmap) : null;
+    }
 
-            int[] pixels = new int[bitMatrixWidth * bitMatrixHeight];
+    private Drawable encodeDrawable()
+    {
+        try
+        {
+            // A size of zero gets the smallest matrix, one pixel per module
+            BitMatrix bitMatrix = BarcodeGenerator.encode(cardId, format, 0, 0);
+            return new BarcodeDrawable(bitMatrix, !BarcodeGenerator.is2D(format));
+        }
+        catch (WriterException e)
+        {
+            Log.e(TAG, "Failed to generate barcode of type " + format + ": " + cardId, e);
+        }
+
+        return null;
+    }
 
-            for (int y = 0; y < bitMatrixHeight; y++)
+    private Bitmap renderBitmap()
+    {
+        BarcodeImageCache cache = BarcodeImageCache.getInstance();
+        Bitmap cached = cache.get(cardId, format, imageWidth, imageHeight);
+        if(cached != null)
+        {
+            return cached;
+        }
+
+        if(diskCache != null)
+        {
+            Bitmap stored = diskCache.get(loyaltyCardId, cardId, format, imageWidth, imageHeight);
+            if(stored != null)
             {
-                int offset = y * bitMatrixWidth;
-                for (int x = 0; x < bitMatrixWidth; x++)
-                {
-                    int color = bitMatrix.get(x, y) ? BLACK : WHITE;
-                    pixels[offset + x] = color;
-                }
+                cache.put(cardId, format, imageWidth, imageHeight, stored);
+                return stored;
             }
-            Bitmap bitmap = Bitmap.createBitmap(bitMatrixWidth, bitMatrixHeight,
-                    Bitmap.Config.ARGB_8888);
-            bitmap.setPixels(pixels, 0, bitMatrixWidth, 0, 0, bitMatrixWidth, bitMatrixHeight);
-
-            // Determine if the image needs to be scaled.
-            // This is necessary because the datamatrix barcode generator
-            // ignores the requested size and returns the smallest image necessary
-            // to represent the barcode. If we let the ImageView scale the image
-            // it will use bi-linear filtering, which results in a blurry barcode.
-            // To avoid this, if scaling is needed do so without filtering.
-
-            int heightScale = imageHeight / bitMatrixHeight;
-            int widthScale = imageWidth / bitMatrixHeight;
-            int scalingFactor = Math.min(heightScale, widthScale);
-
-            if(scalingFactor > 1)
+        }
+
+        try
+        {
+            BitMatrix bitMatrix = BarcodeGenerator.encode(cardId, format, imageWidth, imageHeight);
+            if(isCancelled())
             {
-                bitmap = Bitmap.createScaledBitmap(bitmap, bitMatrixWidth * scalingFactor, bitMatrixHeight * scalingFactor, false);
+                // A newer barcode was requested, do not bother drawing this one
+                return null;
             }
 
+            Bitmap bitmap = rasterize(bitMatrix, format, imageWidth, imageHeight);
+
+            cache.put(cardId, format, imageWidth, imageHeight, bitmap);
+            if(diskCache != null)
+            {
+                // Do not hold back displaying the barcode for the disk write
+                final BarcodeDiskCache targetCache = diskCache;
+                final Bitmap rendered = bitmap;
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(() ->
+                        targetCache.put(loyaltyCardId, cardId, format, imageWidth, imageHeight, rendered));
+            }
             return bitmap;
         }
         catch (WriterException e)
@@ -172,7 +228,7 @@ class BarcodeImageWriterTask extends AsyncTask<Void, Void, Bitmap>
         return null;
     }
 
-    protected void onPostExecute(Bitmap result)
+    protected void onPostExecute(Drawable result)
     {
         Log.i(TAG, "Finished generating barcode image of type " + format + ": " + cardId);
         ImageView imageView = imageViewReference.get();
@@ -182,7 +238,13 @@ class BarcodeImageWriterTask extends AsyncTask<Void, Void, Bitmap>
             return;
         }
 
-        imageView.setImageBitmap(result);
+        if(generation != 0 && !BarcodeRenderExecutor.getInstance().finish(imageView, generation))
+        {
+            Log.d(TAG, "Dropping stale barcode image of type " + format);
+            return;
+        }
+
+        imageView.setImageDrawable(result);
         TextView textView = textViewReference.get();
 
         if(result != null)
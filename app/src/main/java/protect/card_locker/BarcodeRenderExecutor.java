@@ -0,0 +1,217 @@
+package protect.card_locker;
+
+import android.os.AsyncTask;
+import android.os.Process;
+import android.util.Log;
+import android.view.View;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared, bounded executor for BarcodeImageWriterTask.
+ *
+ * Each view has a generation that is bumped whenever a new barcode is
+ * requested for it. The previous task of the view is cancelled with an
+ * interrupt, and a result that arrives for an older generation is dropped,
+ * so results can never show up out of order. Queued work for a visible
+ * barcode runs before work for previews.
+ *
+ * Except for the worker threads, this class is only used from the main
+ * thread.
+ */
+public class BarcodeRenderExecutor
+{
+    private static final String TAG = "Catima";
+
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_PREVIEW = 1;
+    public static final int PRIORITY_WARMUP = 2;
+
+    private static BarcodeRenderExecutor instance;
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Main thread only, like the rest of the bookkeeping
+    private int scheduledCount = 0;
+    private int renderedCount = 0;
+    private int cancelledCount = 0;
+
+    private final Map<View, Integer> generations = new WeakHashMap<>();
+    private final Map<View, AsyncTask<?, ?, ?>> running = new WeakHashMap<>();
+
+    /**
+     * Runs before any job with a higher priority value, and otherwise in
+     * the order it was queued.
+     */
+    private static class Job implements Runnable, Comparable<Job>
+    {
+        final Runnable runnable;
+        final int priority;
+        final long order;
+
+        Job(Runnable runnable, int priority, long order)
+        {
+            this.runnable = runnable;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run()
+        {
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(Job other)
+        {
+            if(priority != other.priority)
+            {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    BarcodeRenderExecutor(int threads)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                return new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "BarcodeRender #" + count.incrementAndGet());
+            }
+        };
+
+        pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized BarcodeRenderExecutor getInstance()
+    {
+        if(instance == null)
+        {
+            // Leave a core for the UI thread, but do not take over the device
+            int threads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+            instance = new BarcodeRenderExecutor(threads);
+        }
+
+        return instance;
+    }
+
+    private Executor executorFor(final int priority)
+    {
+        return new Executor()
+        {
+            @Override
+            public void execute(Runnable runnable)
+            {
+                pool.execute(new Job(runnable, priority, sequence.getAndIncrement()));
+            }
+        };
+    }
+
+    /**
+     * Runs work that is not tied to a view, such as filling the caches
+     * ahead of time.
+     */
+    public void execute(Runnable runnable, int priority)
+    {
+        executorFor(priority).execute(runnable);
+    }
+
+    /**
+     * Starts rendering a barcode into the given view, replacing any render
+     * still pending or running for it.
+     */
+    public void render(View view, BarcodeImageWriterTask task, int priority)
+    {
+        cancel(view);
+
+        Integer previous = generations.get(view);
+        int generation = previous != null ? previous + 1 : 1;
+        generations.put(view, generation);
+        running.put(view, task);
+        scheduledCount++;
+
+        task.setGeneration(generation);
+        task.executeOnExecutor(executorFor(priority));
+    }
+
+    /**
+     * Cancels the render pending or running for the view, if any. Its
+     * result will not be delivered.
+     */
+    public void cancel(View view)
+    {
+        AsyncTask<?, ?, ?> task = running.remove(view);
+        if(task != null && task.getStatus() != AsyncTask.Status.FINISHED)
+        {
+            Log.d(TAG, "Cancelling stale barcode render");
+            task.cancel(true);
+            cancelledCount++;
+        }
+    }
+
+    /**
+     * Whether a result of the given generation is the latest one requested
+     * for the view. Called when the result is delivered, which also ends
+     * tracking of that render.
+     */
+    boolean finish(View view, int generation)
+    {
+        Integer current = generations.get(view);
+        if(current == null || current != generation)
+        {
+            return false;
+        }
+
+        running.remove(view);
+        renderedCount++;
+        return true;
+    }
+
+    /**
+     * Number of renders started with render().
+     */
+    public int getScheduledCount()
+    {
+        return scheduledCount;
+    }
+
+    /**
+     * Number of renders whose result was delivered to their view.
+     */
+    public int getRenderedCount()
+    {
+        return renderedCount;
+    }
+
+    /**
+     * Number of renders cancelled before they finished.
+     */
+    public int getCancelledCount()
+    {
+        return cancelledCount;
+    }
+}
@@ -2,8 +2,9 @@ package protect.card_locker;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.os.AsyncTask;
+import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Handler;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
@@ -13,7 +14,6 @@ import android.util.Log;
 import android.util.Pair;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewTreeObserver;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -24,7 +24,6 @@ import com.google.zxing.BarcodeFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.Map;
 
 /**
@@ -59,14 +58,46 @@ public class BarcodeSelectorActivity extends AppCompatActivity
                 BarcodeFormat.UPC_A.name()
         ));
 
+    // How long typing has to pause before the previews are regenerated
+    static final long PREVIEW_DELAY_MS = 300;
+
     private Map<String, Pair<Integer, Integer>> barcodeViewMap;
-    private LinkedList<AsyncTask> barcodeGeneratorTasks = new LinkedList<>();
+    private final Rect visibleRect = new Rect();
+
+    private final Handler previewHandler = new Handler();
+    private String previewCardId = "";
+    private int previewsRequested = 0;
+
+    // BarcodeRenderExecutor counts for the whole process, so its counts when
+    // this screen opened are kept to log only the renders since then
+    private int scheduledAtStart;
+    private int renderedAtStart;
+    private int cancelledAtStart;
+
+    private final Runnable updatePreviews = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            for(String key : barcodeViewMap.keySet())
+            {
+                ImageView image = findViewById(barcodeViewMap.get(key).first);
+                TextView text = findViewById(barcodeViewMap.get(key).second);
+                renderBarcodeOption(image, key, previewCardId, text);
+            }
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
         super.onCreate(savedInstanceState);
 
+        BarcodeRenderExecutor executor = BarcodeRenderExecutor.getInstance();
+        scheduledAtStart = executor.getScheduledCount();
+        renderedAtStart = executor.getRenderedCount();
+        cancelledAtStart = executor.getCancelledCount();
+
         setContentView(R.layout.barcode_selector_activity);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -104,21 +135,19 @@ public class BarcodeSelectorActivity extends AppCompatActivity
             {
                 Log.d(TAG, "Entered text: " + s);
 
-                // Stop any async tasks which may not have been started yet
-                for(AsyncTask task : barcodeGeneratorTasks)
-                {
-                    task.cancel(false);
-                }
-                barcodeGeneratorTasks.clear();
-
                 // Update barcodes
                 for(String key : barcodeViewMap.keySet())
                 {
                     ImageView image = findViewById(barcodeViewMap.get(key).first);
-                    TextView text = findViewById(barcodeViewMap.get(key).second);
-                    createBarcodeOption(image, key, s.toString(), text);
+                    createBarcodeOption(image, key, s.toString());
                 }
 
+                // Only render the latest text, once typing pauses
+                previewsRequested += barcodeViewMap.size();
+                previewCardId = s.toString();
+                previewHandler.removeCallbacks(updatePreviews);
+                previewHandler.postDelayed(updatePreviews, PREVIEW_DELAY_MS);
+
                 View noBarcodeButtonView = findViewById(R.id.noBarcode);
                 setButtonListener(noBarcodeButtonView, s.toString());
                 noBarcodeButtonView.setEnabled(s.length() > 0);
@@ -137,6 +166,10 @@ public class BarcodeSelectorActivity extends AppCompatActivity
         if(initialCardId != null)
         {
             cardId.setText(initialCardId);
+
+            // Nothing is being typed yet, so show the previews right away
+            previewHandler.removeCallbacks(updatePreviews);
+            previewHandler.post(updatePreviews);
         }
     }
 
@@ -155,14 +188,14 @@ public class BarcodeSelectorActivity extends AppCompatActivity
         });
     }
 
-    private void createBarcodeOption(final ImageView image, final String formatType, final String cardId, final TextView text)
+    /**
+     * Clears the preview and makes it select the new card id. The preview
+     * itself is rendered later, see renderBarcodeOption().
+     */
+    private void createBarcodeOption(final ImageView image, final String formatType, final String cardId)
     {
-        final BarcodeFormat format = BarcodeFormat.valueOf(formatType);
-        if(format == null)
-        {
-            Log.w(TAG, "Unsupported barcode format: " + formatType);
-            return;
-        }
+        // Do not let an outdated preview show up for the new card id
+        BarcodeRenderExecutor.getInstance().cancel(image);
 
         image.setImageBitmap(null);
         image.setOnClickListener(new View.OnClickListener()
@@ -178,34 +211,53 @@ public class BarcodeSelectorActivity extends AppCompatActivity
                 finish();
             }
         });
+    }
 
-        if(image.getHeight() == 0)
+    private void renderBarcodeOption(final ImageView image, final String formatType, final String cardId, final TextView text)
+    {
+        final BarcodeFormat format = BarcodeFormat.valueOf(formatType);
+        if(format == null)
         {
-            // The size of the ImageView is not yet available as it has not
-            // yet been drawn. Wait for it to be drawn so the size is available.
-            image.getViewTreeObserver().addOnGlobalLayoutListener(
-                new ViewTreeObserver.OnGlobalLayoutListener()
-                {
-                    @Override
-                    public void onGlobalLayout()
-                    {
-                        Log.d(TAG, "Global layout finished, type: + " + formatType + ", width: " + image.getWidth());
-                        image.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-
-                        Log.d(TAG, "Generating barcode for type " + formatType);
-                        BarcodeImageWriterTask task = new BarcodeImageWriterTask(image, cardId, format, text);
-                        barcodeGeneratorTasks.add(task);
-                        task.execute();
-                    }
-                });
+            Log.w(TAG, "Unsupported barcode format: " + formatType);
+            return;
         }
-        else
+
+        if(!BarcodeValidator.isValid(cardId, format))
         {
-            Log.d(TAG, "Generating barcode for type " + formatType);
-            BarcodeImageWriterTask task = new BarcodeImageWriterTask(image, cardId, format, text);
-            barcodeGeneratorTasks.add(task);
-            task.execute();
+            // Would fail to encode anyway, so do not bother scheduling it
+            image.setVisibility(View.GONE);
+            text.setVisibility(View.GONE);
+            return;
         }
+
+        // Drawn from the matrix, so there is no need to wait for the
+        // ImageView to be laid out
+        Log.d(TAG, "Generating barcode for type " + formatType);
+        // Any render still running for this image is cancelled and its
+        // result dropped, see BarcodeRenderExecutor
+        BarcodeImageWriterTask task = new BarcodeImageWriterTask(image, cardId, format, text).drawFromMatrix();
+        int priority = image.getLocalVisibleRect(visibleRect)
+                ? BarcodeRenderExecutor.PRIORITY_VISIBLE : BarcodeRenderExecutor.PRIORITY_PREVIEW;
+        BarcodeRenderExecutor.getInstance().render(image, task, priority);
+    }
+
+    int getPreviewsRequested()
+    {
+        return previewsRequested;
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        previewHandler.removeCallbacks(updatePreviews);
+
+        BarcodeRenderExecutor executor = BarcodeRenderExecutor.getInstance();
+        Log.i(TAG, "Barcode previews requested=" + previewsRequested
+                + ", scheduled=" + (executor.getScheduledCount() - scheduledAtStart)
+                + ", rendered=" + (executor.getRenderedCount() - renderedAtStart)
+                + ", cancelled=" + (executor.getCancelledCount() - cancelledAtStart));
+
+        super.onDestroy();
     }
 
     @Override
@@ -0,0 +1,166 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fills the barcode caches for the cards most likely to be opened next,
+ * the starred cards and the app shortcuts, so opening them does not need
+ * to encode anything.
+ *
+ * Runs once per process, at the lowest priority of BarcodeRenderExecutor,
+ * after the main thread first becomes idle.
+ */
+class BarcodeWarmup
+{
+    private static final String TAG = "Catima";
+
+    // Keep the warm-up from pushing everything else out of the memory cache
+    static final int MAX_CARDS = 8;
+
+    private static boolean scheduled = false;
+
+    /**
+     * Call from the main thread once the first screen is shown.
+     */
+    static void scheduleWhenIdle(Context context)
+    {
+        if(scheduled)
+        {
+            return;
+        }
+        scheduled = true;
+
+        final Context appContext = context.getApplicationContext();
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler()
+        {
+            @Override
+            public boolean queueIdle()
+            {
+                BarcodeRenderExecutor.getInstance().execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        warmUp(appContext);
+                    }
+                }, BarcodeRenderExecutor.PRIORITY_WARMUP);
+
+                // Only once
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Renders and caches the barcodes, returns how many were rendered.
+     */
+    static int warmUp(Context context)
+    {
+        BarcodeDiskCache diskCache = BarcodeDiskCache.getInstance(context);
+        int[] viewSize = diskCache.getViewSize();
+        if(viewSize == null)
+        {
+            // The size barcodes are shown at is not known before the first card is shown
+            return 0;
+        }
+
+        DBHelper db = new DBHelper(context);
+
+        // Shortcuts first, they were used most recently
+        Map<Integer, LoyaltyCard> cards = new LinkedHashMap<>();
+        for(Integer id : ShortcutHelper.getShortcutCardIds(context))
+        {
+            LoyaltyCard card = db.getLoyaltyCard(id);
+            if(card != null)
+            {
+                cards.put(card.id, card);
+            }
+        }
+        for(LoyaltyCard card : db.getStarredLoyaltyCards())
+        {
+            if(!cards.containsKey(card.id))
+            {
+                cards.put(card.id, card);
+            }
+        }
+
+        BarcodeImageCache memoryCache = BarcodeImageCache.getInstance();
+        int rendered = 0;
+        int warmed = 0;
+
+        for(LoyaltyCard card : cards.values())
+        {
+            if(warmed >= MAX_CARDS || Thread.currentThread().isInterrupted())
+            {
+                break;
+            }
+
+            if(card.barcodeType.isEmpty())
+            {
+                continue;
+            }
+
+            BarcodeFormat format;
+            try
+            {
+                format = BarcodeFormat.valueOf(card.barcodeType);
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Imports do not check the barcode type
+                Log.w(TAG, "Unknown barcode type of card " + card.id + ": " + card.barcodeType);
+                continue;
+            }
+
+            if(!BarcodeValidator.isValid(card.cardId, format))
+            {
+                continue;
+            }
+
+            warmed++;
+
+            int[] size = BarcodeGenerator.getTargetSize(format, viewSize[0], viewSize[1]);
+            if(memoryCache.get(card.cardId, format, size[0], size[1]) != null)
+            {
+                continue;
+            }
+
+            Bitmap bitmap = diskCache.get(card.id, card.cardId, format, size[0], size[1]);
+            if(bitmap == null)
+            {
+                try
+                {
+                    bitmap = BarcodeImageWriterTask.render(card.cardId, format, size[0], size[1]);
+                }
+                catch(WriterException e)
+                {
+                    Log.w(TAG, "Failed to warm up barcode of card " + card.id, e);
+                    continue;
+                }
+                catch(OutOfMemoryError e)
+                {
+                    Log.w(TAG, "Insufficient memory to warm up barcodes", e);
+                    break;
+                }
+
+                diskCache.put(card.id, card.cardId, format, size[0], size[1], bitmap);
+                rendered++;
+            }
+
+            memoryCache.put(card.cardId, format, size[0], size[1], bitmap);
+        }
+
+        Log.i(TAG, "Warmed up barcodes of " + warmed + " cards, rendered " + rendered);
+        return rendered;
+    }
+}
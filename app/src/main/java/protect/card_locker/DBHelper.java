@@ -7,9 +7,11 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.graphics.Color;
+import android.os.Looper;
 
 import java.util.Date;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class DBHelper extends SQLiteOpenHelper
@@ -20,35 +22,90 @@ public class DBHelper extends SQLiteOpenHelper
 
     static class LoyaltyCardDbGroups
     {
-        public static final String TABLE = "groups";
-        public static final String ID = "_id";
-        public static final String ORDER = "orderId";
+        public static final String TABLE = DatabaseSchema.Groups.TABLE;
+        public static final String ID = DatabaseSchema.Groups.ID;
+        public static final String ORDER = DatabaseSchema.Groups.ORDER;
     }
 
     static class LoyaltyCardDbIds
     {
-        public static final String TABLE = "cards";
-        public static final String ID = "_id";
-        public static final String STORE = "store";
-        public static final String EXPIRY = "expiry";
-        public static final String NOTE = "note";
-        public static final String HEADER_COLOR = "headercolor";
-        public static final String HEADER_TEXT_COLOR = "headertextcolor";
-        public static final String CARD_ID = "cardid";
-        public static final String BARCODE_TYPE = "barcodetype";
-        public static final String STAR_STATUS = "starstatus";
+        public static final String TABLE = DatabaseSchema.Cards.TABLE;
+        public static final String ID = DatabaseSchema.Cards.ID;
+        public static final String STORE = DatabaseSchema.Cards.STORE;
+        public static final String EXPIRY = DatabaseSchema.Cards.EXPIRY;
+        public static final String NOTE = DatabaseSchema.Cards.NOTE;
+        public static final String HEADER_COLOR = DatabaseSchema.Cards.HEADER_COLOR;
+        public static final String HEADER_TEXT_COLOR = DatabaseSchema.Cards.HEADER_TEXT_COLOR;
+        public static final String CARD_ID = DatabaseSchema.Cards.CARD_ID;
+        public static final String BARCODE_TYPE = DatabaseSchema.Cards.BARCODE_TYPE;
+        public static final String STAR_STATUS = DatabaseSchema.Cards.STAR_STATUS;
     }
 
     static class LoyaltyCardDbIdsGroups
     {
-        public static final String TABLE = "cardsGroups";
-        public static final String cardID = "cardId";
-        public static final String groupID = "groupId";
+        public static final String TABLE = DatabaseSchema.CardsGroups.TABLE;
+        public static final String cardID = DatabaseSchema.CardsGroups.cardID;
+        public static final String groupID = DatabaseSchema.CardsGroups.groupID;
     }
 
+    private static volatile boolean mainThreadAccessAllowed = true;
+
+    private final Context context;
+
     public DBHelper(Context context)
     {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Drops the in-memory index of the cards. Writing a single card only
+     * updates it, importers call this as they write cards inside a
+     * transaction, and again once it is committed.
+     */
+    void cardsChanged()
+    {
+        LoyaltyCardIndex.getInstance(context).invalidate();
+    }
+
+    /**
+     * Drops the in-memory group membership of all cards. Like
+     * cardsChanged(), importers call it again once their transaction is
+     * committed.
+     */
+    void groupsChanged()
+    {
+        LoyaltyCardIndex.getInstance(context).allGroupsChanged();
+    }
+
+    /**
+     * Lets tests make any database access from the main thread fail.
+     */
+    static void setMainThreadAccessAllowed(boolean allowed)
+    {
+        mainThreadAccessAllowed = allowed;
+    }
+
+    private static void checkThread()
+    {
+        if(!mainThreadAccessAllowed && Looper.myLooper() == Looper.getMainLooper())
+        {
+            throw new IllegalStateException("Database accessed on the main thread");
+        }
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase()
+    {
+        checkThread();
+        return super.getReadableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase()
+    {
+        checkThread();
+        return super.getWritableDatabase();
     }
 
     @Override
@@ -145,6 +202,10 @@ public class DBHelper extends SQLiteOpenHelper
         contentValues.put(LoyaltyCardDbIds.HEADER_TEXT_COLOR, Color.WHITE);
         contentValues.put(LoyaltyCardDbIds.STAR_STATUS, starStatus);
         final long newId = db.insert(LoyaltyCardDbIds.TABLE, null, contentValues);
+        if(newId != -1)
+        {
+            LoyaltyCardIndex.getInstance(context).cardAdded(getLoyaltyCard((int) newId));
+        }
         return newId;
     }
 
@@ -164,6 +225,7 @@ public class DBHelper extends SQLiteOpenHelper
         contentValues.put(LoyaltyCardDbIds.HEADER_TEXT_COLOR, Color.WHITE);
         contentValues.put(LoyaltyCardDbIds.STAR_STATUS,starStatus);
         final long newId = db.insert(LoyaltyCardDbIds.TABLE, null, contentValues);
+        cardsChanged();
         return (newId != -1);
     }
 
@@ -183,6 +245,10 @@ public class DBHelper extends SQLiteOpenHelper
         int rowsUpdated = db.update(LoyaltyCardDbIds.TABLE, contentValues,
                 LoyaltyCardDbIds.ID + "=?",
                 new String[]{Integer.toString(id)});
+        if(rowsUpdated == 1)
+        {
+            LoyaltyCardIndex.getInstance(context).cardUpdated(getLoyaltyCard(id));
+        }
         return (rowsUpdated == 1);
     }
 
@@ -194,6 +260,10 @@ public class DBHelper extends SQLiteOpenHelper
         int rowsUpdated = db.update(LoyaltyCardDbIds.TABLE, contentValues,
                 LoyaltyCardDbIds.ID + "=?",
                 new String[]{Integer.toString(id)});
+        if(rowsUpdated == 1)
+        {
+            LoyaltyCardIndex.getInstance(context).cardUpdated(getLoyaltyCard(id));
+        }
         return (rowsUpdated == 1);
     }
 
@@ -217,6 +287,25 @@ public class DBHelper extends SQLiteOpenHelper
         return card;
     }
 
+    public List<LoyaltyCard> getStarredLoyaltyCards()
+    {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery("select * from " + LoyaltyCardDbIds.TABLE +
+                " where " + LoyaltyCardDbIds.STAR_STATUS + " != 0" +
+                " ORDER BY " + LoyaltyCardDbIds.STORE + " COLLATE NOCASE ASC", null);
+
+        List<LoyaltyCard> cards = new ArrayList<>();
+
+        while(data.moveToNext())
+        {
+            cards.add(LoyaltyCard.toLoyaltyCard(data));
+        }
+
+        data.close();
+
+        return cards;
+    }
+
     public List<Group> getLoyaltyCardGroups(final int id)
     {
         SQLiteDatabase db = getReadableDatabase();
@@ -259,6 +348,8 @@ public class DBHelper extends SQLiteOpenHelper
             contentValues.put(LoyaltyCardDbIdsGroups.groupID, group._id);
             db.insert(LoyaltyCardDbIdsGroups.TABLE, null, contentValues);
         }
+
+        LoyaltyCardIndex.getInstance(context).groupsChanged(id, groups);
     }
 
     public void setLoyaltyCardGroups(final SQLiteDatabase db, final int id, List<Group> groups)
@@ -275,6 +366,9 @@ public class DBHelper extends SQLiteOpenHelper
             contentValues.put(LoyaltyCardDbIdsGroups.groupID, group._id);
             db.insert(LoyaltyCardDbIdsGroups.TABLE, null, contentValues);
         }
+
+        // The transaction may still be rolled back
+        groupsChanged();
     }
 
     public boolean deleteLoyaltyCard (final int id)
@@ -290,6 +384,11 @@ public class DBHelper extends SQLiteOpenHelper
                 LoyaltyCardDbIdsGroups.cardID + " = ? ",
                 new String[]{String.format("%d", id)});
 
+        LoyaltyCardIndex.getInstance(context).groupsChanged(id, Collections.<Group>emptyList());
+        if(rowsDeleted == 1)
+        {
+            LoyaltyCardIndex.getInstance(context).cardDeleted(id);
+        }
         return (rowsDeleted == 1);
     }
 
@@ -355,6 +454,30 @@ public class DBHelper extends SQLiteOpenHelper
         return res;
     }
 
+    /**
+     * Returns all loyalty cards with the filter text in either the store or note in a certain group,
+     * in the same order as getLoyaltyCardCursor.
+     *
+     * @param filter
+     * @param group
+     * @return List of LoyaltyCard
+     */
+    public List<LoyaltyCard> getLoyaltyCards(final String filter, Group group)
+    {
+        Cursor data = getLoyaltyCardCursor(filter, group);
+
+        List<LoyaltyCard> cards = new ArrayList<>(data.getCount());
+
+        while(data.moveToNext())
+        {
+            cards.add(LoyaltyCard.toLoyaltyCard(data));
+        }
+
+        data.close();
+
+        return cards;
+    }
+
     public int getLoyaltyCardCount()
     {
         // An empty string will match everything
@@ -484,6 +607,26 @@ public class DBHelper extends SQLiteOpenHelper
         return numItems;
     }
 
+    /**
+     * Reads which groups every card is in.
+     */
+    public GroupMembership getGroupMembership()
+    {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor data = db.rawQuery("SELECT " + LoyaltyCardDbIdsGroups.cardID + "," + LoyaltyCardDbIdsGroups.groupID +
+                " FROM " + LoyaltyCardDbIdsGroups.TABLE, null);
+
+        GroupMembership membership = new GroupMembership();
+
+        while (data.moveToNext()) {
+            membership.add(data.getInt(0), data.getString(1));
+        }
+
+        data.close();
+
+        return membership;
+    }
+
     public List<Integer> getGroupCardIds(final String groupName)
     {
         SQLiteDatabase db = getReadableDatabase();
@@ -563,6 +706,10 @@ public class DBHelper extends SQLiteOpenHelper
             db.endTransaction();
         }
 
+        if (success) {
+            LoyaltyCardIndex.getInstance(context).groupRenamed(groupName, newName);
+        }
+
         return success;
     }
 
@@ -592,6 +739,10 @@ public class DBHelper extends SQLiteOpenHelper
             db.endTransaction();
         }
 
+        if (success) {
+            LoyaltyCardIndex.getInstance(context).groupDeleted(groupName);
+        }
+
         return success;
     }
 
@@ -0,0 +1,150 @@
+package protect.card_locker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CardStorage backed by the app's SQLite database, so the import and
+ * export code in the core module can work on it.
+ */
+class DBHelperCardStorage implements CardStorage
+{
+    private final DBHelper helper;
+    private SQLiteDatabase database;
+
+    // Cards inserted in the transaction, which cannot be in any group yet
+    private final Set<Integer> insertedCardIds = new HashSet<>();
+
+    // Groups of every card added to one in the transaction, written once
+    // per card when it succeeds
+    private final Map<Integer, List<Group>> cardGroups = new LinkedHashMap<>();
+
+    DBHelperCardStorage(DBHelper helper)
+    {
+        this.helper = helper;
+    }
+
+    @Override
+    public List<String> getGroupIds()
+    {
+        List<String> groupIds = new ArrayList<>();
+
+        for(Group group : helper.getGroups())
+        {
+            groupIds.add(group._id);
+        }
+
+        return groupIds;
+    }
+
+    @Override
+    public void forEachCard(CardVisitor visitor) throws IOException, InterruptedException
+    {
+        Cursor cardCursor = helper.getLoyaltyCardCursor();
+
+        try
+        {
+            while(cardCursor.moveToNext())
+            {
+                visitor.visit(LoyaltyCard.toLoyaltyCard(cardCursor));
+            }
+        }
+        finally
+        {
+            cardCursor.close();
+        }
+    }
+
+    @Override
+    public List<String> getCardGroupIds(int cardId)
+    {
+        List<String> groupIds = new ArrayList<>();
+
+        for(Group group : helper.getLoyaltyCardGroups(cardId))
+        {
+            groupIds.add(group._id);
+        }
+
+        return groupIds;
+    }
+
+    @Override
+    public void beginTransaction()
+    {
+        database = helper.getWritableDatabase();
+        database.beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful()
+    {
+        for(Map.Entry<Integer, List<Group>> entry : cardGroups.entrySet())
+        {
+            helper.setLoyaltyCardGroups(database, entry.getKey(), entry.getValue());
+        }
+
+        database.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction()
+    {
+        database.endTransaction();
+        database.close();
+        database = null;
+
+        insertedCardIds.clear();
+        cardGroups.clear();
+
+        // Cards read while importing saw the database before the commit
+        helper.cardsChanged();
+        helper.groupsChanged();
+    }
+
+    @Override
+    public void insertGroup(String groupId)
+    {
+        helper.insertGroup(database, groupId);
+    }
+
+    @Override
+    public void insertCard(CardRecord card)
+    {
+        if(helper.insertLoyaltyCard(database, card.id, card.store, card.note, card.expiry, card.cardId,
+                card.barcodeType, card.headerColor, card.starStatus))
+        {
+            insertedCardIds.add(card.id);
+        }
+    }
+
+    @Override
+    public void addCardToGroup(int cardId, String groupId)
+    {
+        List<Group> groups = cardGroups.get(cardId);
+        if(groups == null)
+        {
+            // Only cards which were already stored need their groups read
+            groups = insertedCardIds.contains(cardId)
+                    ? new ArrayList<Group>() : helper.getLoyaltyCardGroups(cardId);
+            cardGroups.put(cardId, groups);
+        }
+
+        for(Group group : groups)
+        {
+            if(group._id.equals(groupId))
+            {
+                return;
+            }
+        }
+
+        groups.add(new Group(groupId));
+    }
+}
@@ -2,7 +2,17 @@ package protect.card_locker;
 
 public enum DataFormat
 {
-    CSV,
+    CSV("text/csv", "csv"),
+    JSON("application/json", "json"),
 
     ;
+
+    public final String mimeType;
+    public final String extension;
+
+    DataFormat(String mimeType, String extension)
+    {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
 }
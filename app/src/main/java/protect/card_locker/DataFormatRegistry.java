@@ -0,0 +1,63 @@
+package protect.card_locker;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Registry of the importers and exporters available for each
+ * data format.
+ *
+ * Importers are also able to tell if a stream looks like their
+ * format, which is used to detect the format of a file the user
+ * picked for import.
+ */
+public class DataFormatRegistry
+{
+    /**
+     * Maximum number of characters looked at to detect the format
+     * of a stream.
+     */
+    public static final int DETECTION_PREFIX_LENGTH = 256;
+
+    private static final Map<DataFormat, DatabaseImporter> importers = new EnumMap<>(DataFormat.class);
+    private static final Map<DataFormat, DatabaseExporter> exporters = new EnumMap<>(DataFormat.class);
+
+    static
+    {
+        register(DataFormat.CSV, new CsvDatabaseImporter(), new CsvDatabaseExporter());
+        register(DataFormat.JSON, new JsonDatabaseImporter(), new JsonDatabaseExporter());
+    }
+
+    public static synchronized void register(DataFormat format, DatabaseImporter importer, DatabaseExporter exporter)
+    {
+        importers.put(format, importer);
+        exporters.put(format, exporter);
+    }
+
+    public static synchronized DatabaseImporter getImporter(DataFormat format)
+    {
+        return importers.get(format);
+    }
+
+    public static synchronized DatabaseExporter getExporter(DataFormat format)
+    {
+        return exporters.get(format);
+    }
+
+    /**
+     * Returns the first format whose importer accepts the given prefix
+     * of a stream, or null if none does.
+     */
+    public static synchronized DataFormat detectFormat(String prefix)
+    {
+        for(Map.Entry<DataFormat, DatabaseImporter> entry : importers.entrySet())
+        {
+            if(entry.getValue().canImport(prefix))
+            {
+                return entry.getKey();
+            }
+        }
+
+        return null;
+    }
+}
@@ -1,7 +1,7 @@
 package protect.card_locker;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 /**
  * Interface for a class which can export the contents of the database
@@ -13,5 +13,5 @@ public interface DatabaseExporter
      * Export the database to the output stream in a given format.
      * @throws IOException
      */
-    void exportData(DBHelper db, OutputStreamWriter output) throws IOException, InterruptedException;
+    void exportData(DBHelper db, Writer output) throws IOException, InterruptedException;
 }
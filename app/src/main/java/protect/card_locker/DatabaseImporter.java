@@ -1,7 +1,7 @@
 package protect.card_locker;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 
 /**
  * Interface for a class which can import the contents of a stream
@@ -9,11 +9,18 @@ import java.io.InputStreamReader;
  */
 public interface DatabaseImporter
 {
+    /**
+     * Check if the given prefix of a stream looks like data this
+     * importer understands. The prefix may be shorter than the
+     * full stream, or empty if the stream is empty.
+     */
+    boolean canImport(String prefix);
+
     /**
      * Import data from the input stream in a given format into
      * the database.
      * @throws IOException
      * @throws FormatException
      */
-    void importData(DBHelper db, InputStreamReader input) throws IOException, FormatException, InterruptedException;
+    void importData(DBHelper db, Reader input) throws IOException, FormatException, InterruptedException;
 }
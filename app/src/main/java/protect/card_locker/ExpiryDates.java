@@ -0,0 +1,136 @@
+package protect.card_locker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.SparseArray;
+
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+
+/**
+ * Decides whether expiry dates have passed and formats them for display.
+ *
+ * The start of today, the date formatter and the expiry sentence of every
+ * card are kept until the day, time zone or locale changes, so binding a
+ * card list row does not create calendars or formatters.
+ *
+ * There is one instance for the whole process, holding the application
+ * context. Its receiver for those changes is never unregistered, as it
+ * is needed for as long as the process shows any card.
+ */
+public class ExpiryDates
+{
+    /**
+     * Expiry of a card as shown to the user.
+     */
+    public static final class Expiry
+    {
+        public final boolean expired;
+        public final String text;
+
+        private final long time;
+
+        private Expiry(long time, boolean expired, String text)
+        {
+            this.time = time;
+            this.expired = expired;
+            this.text = text;
+        }
+    }
+
+    private static ExpiryDates instance;
+
+    private final Context context;
+
+    private long startOfToday;
+    private long startOfTomorrow;
+    private Locale locale;
+    private DateFormat format;
+
+    // Expiry sentences by card id
+    private final SparseArray<Expiry> expiries = new SparseArray<>();
+
+    public static synchronized ExpiryDates getInstance(Context context)
+    {
+        if(instance == null)
+        {
+            instance = new ExpiryDates(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    private ExpiryDates(Context context)
+    {
+        this.context = context;
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+
+        context.registerReceiver(new BroadcastReceiver()
+        {
+            @Override
+            public void onReceive(Context context, Intent intent)
+            {
+                invalidate();
+            }
+        }, filter);
+    }
+
+    /**
+     * Returns the expiry of the card, which must have an expiry date.
+     */
+    public synchronized Expiry getExpiry(LoyaltyCard card)
+    {
+        update();
+
+        long time = card.expiry.getTime();
+        Expiry expiry = expiries.get(card.id);
+        if(expiry == null || expiry.time != time)
+        {
+            boolean expired = time < startOfToday;
+            int sentence = expired ? R.string.expiryStateSentenceExpired : R.string.expiryStateSentence;
+            expiry = new Expiry(time, expired, context.getString(sentence, format.format(card.expiry)));
+            expiries.put(card.id, expiry);
+        }
+
+        return expiry;
+    }
+
+    /**
+     * Drops everything derived from the current day, time zone or locale.
+     */
+    public synchronized void invalidate()
+    {
+        format = null;
+    }
+
+    private void update()
+    {
+        long now = System.currentTimeMillis();
+        if(format != null && now >= startOfToday && now < startOfTomorrow && locale == Locale.getDefault())
+        {
+            return;
+        }
+
+        Calendar date = new GregorianCalendar();
+        date.set(Calendar.HOUR_OF_DAY, 0);
+        date.set(Calendar.MINUTE, 0);
+        date.set(Calendar.SECOND, 0);
+        date.set(Calendar.MILLISECOND, 0);
+        startOfToday = date.getTimeInMillis();
+        date.add(Calendar.DAY_OF_MONTH, 1);
+        startOfTomorrow = date.getTimeInMillis();
+
+        locale = Locale.getDefault();
+        format = DateFormat.getDateInstance(DateFormat.LONG);
+        expiries.clear();
+    }
+}
@@ -12,13 +12,11 @@ import protect.card_locker.preferences.Settings;
 
 class GroupCursorAdapter extends CursorAdapter
 {
-    Settings settings;
     DBHelper db;
 
     public GroupCursorAdapter(Context context, Cursor cursor)
     {
         super(context, cursor, 0);
-        settings = new Settings(context);
 
         db = new DBHelper(context);
     }
@@ -50,7 +48,8 @@ class GroupCursorAdapter extends CursorAdapter
 
         countField.setText(context.getResources().getQuantityString(R.plurals.groupCardCount, groupCardCount, groupCardCount));
 
-        nameField.setTextSize(settings.getCardTitleListFontSize());
-        countField.setTextSize(settings.getCardNoteListFontSize());
+        Settings.Snapshot settings = Settings.getSnapshot(context);
+        nameField.setTextSize(settings.cardTitleListFontSize);
+        countField.setTextSize(settings.cardNoteListFontSize);
     }
 }
@@ -8,6 +8,7 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
@@ -26,6 +27,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -37,13 +39,24 @@ public class ImportExportActivity extends AppCompatActivity
     private static final int CHOOSE_EXPORT_LOCATION = 2;
     private static final int CHOOSE_EXPORTED_FILE = 3;
 
+    private static final String STATE_EXPORT_FORMAT = "exportFormat";
+
     private ImportExportTask importExporter;
 
+    // Chosen before picking the export location, which may recreate us
+    private DataFormat exportFormat = DataFormat.CSV;
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.import_export_activity);
+
+        if(savedInstanceState != null)
+        {
+            exportFormat = DataFormat.valueOf(savedInstanceState.getString(STATE_EXPORT_FORMAT, DataFormat.CSV.name()));
+        }
+
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
         ActionBar actionBar = getSupportActionBar();
@@ -66,19 +79,13 @@ public class ImportExportActivity extends AppCompatActivity
                     PERMISSIONS_EXTERNAL_STORAGE);
         }
 
-        // Check that there is a file manager available
-        final Intent intentCreateDocumentAction = new Intent(Intent.ACTION_CREATE_DOCUMENT);
-        intentCreateDocumentAction.addCategory(Intent.CATEGORY_OPENABLE);
-        intentCreateDocumentAction.setType("text/csv");
-        intentCreateDocumentAction.putExtra(Intent.EXTRA_TITLE, "Catima.csv");
-
         Button exportButton = findViewById(R.id.exportButton);
         exportButton.setOnClickListener(new View.OnClickListener()
         {
             @Override
             public void onClick(View v)
             {
-                chooseFileWithIntent(intentCreateDocumentAction, CHOOSE_EXPORT_LOCATION);
+                chooseExportFormat();
             }
         });
 
@@ -111,6 +118,51 @@ public class ImportExportActivity extends AppCompatActivity
         });
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState)
+    {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_FORMAT, exportFormat.name());
+    }
+
+    private void chooseExportFormat()
+    {
+        final DataFormat[] formats = DataFormat.values();
+        String[] names = new String[formats.length];
+        for(int index = 0; index < formats.length; index++)
+        {
+            names[index] = formats[index].name();
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.exportFormatTitle);
+        builder.setItems(names, new DialogInterface.OnClickListener()
+        {
+            @Override
+            public void onClick(DialogInterface dialog, int which)
+            {
+                exportWith(formats[which]);
+            }
+        });
+        builder.create().show();
+    }
+
+    /**
+     * Asks for a location to export to in the given format.
+     */
+    void exportWith(DataFormat format)
+    {
+        exportFormat = format;
+
+        // Check that there is a file manager available
+        Intent intentCreateDocumentAction = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intentCreateDocumentAction.addCategory(Intent.CATEGORY_OPENABLE);
+        intentCreateDocumentAction.setType(format.mimeType);
+        intentCreateDocumentAction.putExtra(Intent.EXTRA_TITLE, "Catima." + format.extension);
+
+        chooseFileWithIntent(intentCreateDocumentAction, CHOOSE_EXPORT_LOCATION);
+    }
+
     private void startImport(final InputStream target, final Uri targetUri)
     {
         ImportExportTask.TaskCompleteListener listener = new ImportExportTask.TaskCompleteListener()
@@ -123,10 +175,68 @@ public class ImportExportActivity extends AppCompatActivity
         };
 
         importExporter = new ImportExportTask(ImportExportActivity.this,
-                DataFormat.CSV, target, listener);
+                target, listener);
+        importExporter.execute();
+    }
+
+    private void startImport(final ParcelFileDescriptor target, final Uri targetUri)
+    {
+        ImportExportTask.TaskCompleteListener listener = new ImportExportTask.TaskCompleteListener()
+        {
+            @Override
+            public void onTaskComplete(boolean success)
+            {
+                onImportComplete(success, targetUri);
+            }
+        };
+
+        importExporter = new ImportExportTask(ImportExportActivity.this,
+                target, listener);
         importExporter.execute();
     }
 
+    /**
+     * Opens the given content URI as a file descriptor if it refers to a
+     * regular file, so it can be imported without going through a stream.
+     *
+     * @return the descriptor, or null if the content is not seekable
+     */
+    private ParcelFileDescriptor openSeekableFileDescriptor(Uri uri)
+    {
+        ParcelFileDescriptor descriptor;
+
+        try
+        {
+            descriptor = getContentResolver().openFileDescriptor(uri, "r");
+        }
+        catch(FileNotFoundException | SecurityException | IllegalArgumentException e)
+        {
+            Log.w(TAG, "Unable to open file descriptor for: " + uri.toString(), e);
+            return null;
+        }
+
+        if(descriptor == null)
+        {
+            return null;
+        }
+
+        // Pipes and sockets have no size and cannot be mapped
+        if(descriptor.getStatSize() < 0)
+        {
+            try
+            {
+                descriptor.close();
+            }
+            catch(IOException e)
+            {
+                Log.w(TAG, "Unable to close file descriptor", e);
+            }
+            return null;
+        }
+
+        return descriptor;
+    }
+
     private void startExport(final OutputStream target, final Uri targetUri)
     {
         ImportExportTask.TaskCompleteListener listener = new ImportExportTask.TaskCompleteListener()
@@ -139,7 +249,7 @@ public class ImportExportActivity extends AppCompatActivity
         };
 
         importExporter = new ImportExportTask(ImportExportActivity.this,
-                DataFormat.CSV, target, listener);
+                exportFormat, target, listener);
         importExporter.execute();
     }
 
@@ -260,7 +370,7 @@ public class ImportExportActivity extends AppCompatActivity
                 {
                     Intent sendIntent = new Intent(Intent.ACTION_SEND);
                     sendIntent.putExtra(Intent.EXTRA_STREAM, path);
-                    sendIntent.setType("text/csv");
+                    sendIntent.setType(exportFormat.mimeType);
 
                     // set flag to give temporary permission to external app to use the FileProvider
                     sendIntent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
@@ -326,6 +436,17 @@ public class ImportExportActivity extends AppCompatActivity
             }
             else
             {
+                if(uri.getScheme() != null)
+                {
+                    ParcelFileDescriptor descriptor = openSeekableFileDescriptor(uri);
+                    if(descriptor != null)
+                    {
+                        Log.i(TAG, "Starting file import with: " + uri.toString());
+                        startImport(descriptor, uri);
+                        return;
+                    }
+                }
+
                 InputStream reader;
                 if(uri.getScheme() != null)
                 {
@@ -4,13 +4,16 @@ import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.os.AsyncTask;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.charset.Charset;
 
 class ImportExportTask extends AsyncTask<Void, Void, Boolean>
@@ -22,6 +25,7 @@ class ImportExportTask extends AsyncTask<Void, Void, Boolean>
     private DataFormat format;
     private OutputStream outputStream;
     private InputStream inputStream;
+    private ParcelFileDescriptor inputFileDescriptor;
     private TaskCompleteListener listener;
 
     private ProgressDialog progress;
@@ -40,6 +44,15 @@ class ImportExportTask extends AsyncTask<Void, Void, Boolean>
         this.listener = listener;
     }
 
+    /**
+     * Constructor which will setup a task for importing from the given InputStream,
+     * detecting the format from the data itself.
+     */
+    ImportExportTask(Activity activity, InputStream input, TaskCompleteListener listener)
+    {
+        this(activity, null, input, listener);
+    }
+
     /**
      * Constructor which will setup a task for importing from the given InputStream.
      */
@@ -54,14 +67,60 @@ class ImportExportTask extends AsyncTask<Void, Void, Boolean>
         this.listener = listener;
     }
 
+    /**
+     * Constructor which will setup a task for importing from the given file,
+     * detecting the format from the data itself. The file is memory-mapped
+     * when possible, and read as a stream otherwise.
+     */
+    ImportExportTask(Activity activity, ParcelFileDescriptor input, TaskCompleteListener listener)
+    {
+        super();
+        this.activity = activity;
+        this.doImport = true;
+        this.format = null;
+        this.inputFileDescriptor = input;
+        this.listener = listener;
+    }
+
+    private Reader openFileDescriptor(ParcelFileDescriptor descriptor)
+    {
+        FileInputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+
+        try
+        {
+            return new MappedFileReader(stream);
+        }
+        catch(IOException e)
+        {
+            Log.w(TAG, "Unable to map file, reading it as a stream", e);
+            return new InputStreamReader(stream, Charset.forName("UTF-8"));
+        }
+    }
+
+    private boolean performImport(ParcelFileDescriptor descriptor, DBHelper db)
+    {
+        return performImport(openFileDescriptor(descriptor), db);
+    }
+
     private boolean performImport(InputStream stream, DBHelper db)
+    {
+        return performImport(new InputStreamReader(stream, Charset.forName("UTF-8")), db);
+    }
+
+    private boolean performImport(Reader reader, DBHelper db)
     {
         boolean result = false;
 
         try
         {
-            InputStreamReader reader = new InputStreamReader(stream, Charset.forName("UTF-8"));
-            result = MultiFormatImporter.importData(db, reader, format);
+            if(format != null)
+            {
+                result = MultiFormatImporter.importData(db, reader, format);
+            }
+            else
+            {
+                result = MultiFormatImporter.importData(db, reader);
+            }
             reader.close();
         }
         catch(IOException e)
@@ -116,7 +175,11 @@ class ImportExportTask extends AsyncTask<Void, Void, Boolean>
         final DBHelper db = new DBHelper(activity);
         boolean result;
 
-        if(doImport)
+        if(doImport && inputFileDescriptor != null)
+        {
+            result = performImport(inputFileDescriptor, db);
+        }
+        else if(doImport)
         {
             result = performImport(inputStream, db);
         }
@@ -4,17 +4,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import java.io.InvalidObjectException;
-import java.util.Date;
 
 public class ImportURIHelper {
-    private static final String STORE = DBHelper.LoyaltyCardDbIds.STORE;
-    private static final String NOTE = DBHelper.LoyaltyCardDbIds.NOTE;
-    private static final String EXPIRY = DBHelper.LoyaltyCardDbIds.EXPIRY;
-    private static final String CARD_ID = DBHelper.LoyaltyCardDbIds.CARD_ID;
-    private static final String BARCODE_TYPE = DBHelper.LoyaltyCardDbIds.BARCODE_TYPE;
-
-    private static final String HEADER_COLOR = DBHelper.LoyaltyCardDbIds.HEADER_COLOR;
-
     private final Context context;
     private final String host;
     private final String path;
@@ -40,33 +31,7 @@ public class ImportURIHelper {
             throw new InvalidObjectException("Not an import URI");
         }
 
-        try {
-            // These values are allowed to be null
-            Date expiry = null;
-            Integer headerColor = null;
-            Integer headerTextColor = null;
-
-            String store = uri.getQueryParameter(STORE);
-            String note = uri.getQueryParameter(NOTE);
-            String cardId = uri.getQueryParameter(CARD_ID);
-            String barcodeType = uri.getQueryParameter(BARCODE_TYPE);
-            if (store == null || note == null || cardId == null || barcodeType == null) throw new InvalidObjectException("Not a valid import URI");
-
-            String unparsedExpiry = uri.getQueryParameter(EXPIRY);
-            if(unparsedExpiry != null && !unparsedExpiry.equals(""))
-            {
-                expiry = new Date(Long.parseLong(unparsedExpiry));
-            }
-            String unparsedHeaderColor = uri.getQueryParameter(HEADER_COLOR);
-            if(unparsedHeaderColor != null)
-            {
-                headerColor = Integer.parseInt(unparsedHeaderColor);
-            }
-
-            return new LoyaltyCard(-1, store, note, expiry, cardId, barcodeType, headerColor, headerTextColor, 0);
-        } catch (NullPointerException | NumberFormatException ex) {
-            throw new InvalidObjectException("Not a valid import URI");
-        }
+        return LoyaltyCard.fromRecord(CardUriCodec.fromQuery(uri.getEncodedQuery()));
     }
 
     // Protected for usage in tests
@@ -75,18 +40,7 @@ public class ImportURIHelper {
         uriBuilder.scheme("https");
         uriBuilder.authority(host);
         uriBuilder.path(path);
-        uriBuilder.appendQueryParameter(STORE, loyaltyCard.store);
-        uriBuilder.appendQueryParameter(NOTE, loyaltyCard.note);
-        if (loyaltyCard.expiry != null) {
-            uriBuilder.appendQueryParameter(EXPIRY, String.valueOf(loyaltyCard.expiry.getTime()));
-        }
-        uriBuilder.appendQueryParameter(CARD_ID, loyaltyCard.cardId);
-        uriBuilder.appendQueryParameter(BARCODE_TYPE, loyaltyCard.barcodeType);
-        if(loyaltyCard.headerColor != null)
-        {
-            uriBuilder.appendQueryParameter(HEADER_COLOR, loyaltyCard.headerColor.toString());
-        }
-        //StarStatus will not be exported
+        uriBuilder.encodedQuery(CardUriCodec.toQuery(loyaltyCard));
         return uriBuilder.build();
     }
 
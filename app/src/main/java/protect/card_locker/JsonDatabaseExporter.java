@@ -0,0 +1,113 @@
+package protect.card_locker;
+
+import android.database.Cursor;
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Class for exporting the database into JSON format.
+ *
+ * The data is written as a single object with one array per table, using
+ * the database column names as keys. Everything is streamed straight from
+ * the database cursors, so no document is built in memory.
+ */
+public class JsonDatabaseExporter implements DatabaseExporter
+{
+    public static final int VERSION = 1;
+    public static final String VERSION_KEY = "version";
+
+    public void exportData(DBHelper db, Writer output) throws IOException, InterruptedException
+    {
+        JsonWriter writer = new JsonWriter(output);
+
+        writer.beginObject();
+        writer.name(VERSION_KEY).value(VERSION);
+
+        // Groups
+        writer.name(DBHelper.LoyaltyCardDbGroups.TABLE);
+        writer.beginArray();
+
+        Cursor groupCursor = db.getGroupCursor();
+
+        while(groupCursor.moveToNext())
+        {
+            Group group = Group.toGroup(groupCursor);
+
+            writer.beginObject();
+            writer.name(DBHelper.LoyaltyCardDbGroups.ID).value(group._id);
+            writer.endObject();
+
+            if(Thread.currentThread().isInterrupted())
+            {
+                groupCursor.close();
+                throw new InterruptedException();
+            }
+        }
+
+        groupCursor.close();
+        writer.endArray();
+
+        // Cards
+        writer.name(DBHelper.LoyaltyCardDbIds.TABLE);
+        writer.beginArray();
+
+        Cursor cardCursor = db.getLoyaltyCardCursor();
+
+        while(cardCursor.moveToNext())
+        {
+            LoyaltyCard card = LoyaltyCard.toLoyaltyCard(cardCursor);
+
+            writer.beginObject();
+            writer.name(DBHelper.LoyaltyCardDbIds.ID).value(card.id);
+            writer.name(DBHelper.LoyaltyCardDbIds.STORE).value(card.store);
+            writer.name(DBHelper.LoyaltyCardDbIds.NOTE).value(card.note);
+            writer.name(DBHelper.LoyaltyCardDbIds.EXPIRY).value(card.expiry != null ? card.expiry.getTime() : null);
+            writer.name(DBHelper.LoyaltyCardDbIds.CARD_ID).value(card.cardId);
+            writer.name(DBHelper.LoyaltyCardDbIds.HEADER_COLOR).value(card.headerColor);
+            writer.name(DBHelper.LoyaltyCardDbIds.BARCODE_TYPE).value(card.barcodeType);
+            writer.name(DBHelper.LoyaltyCardDbIds.STAR_STATUS).value(card.starStatus);
+            writer.endObject();
+
+            if(Thread.currentThread().isInterrupted())
+            {
+                cardCursor.close();
+                throw new InterruptedException();
+            }
+        }
+
+        cardCursor.close();
+        writer.endArray();
+
+        // Card group mappings
+        writer.name(DBHelper.LoyaltyCardDbIdsGroups.TABLE);
+        writer.beginArray();
+
+        Cursor cardCursor2 = db.getLoyaltyCardCursor();
+
+        while(cardCursor2.moveToNext())
+        {
+            LoyaltyCard card = LoyaltyCard.toLoyaltyCard(cardCursor2);
+
+            for (Group group : db.getLoyaltyCardGroups(card.id)) {
+                writer.beginObject();
+                writer.name(DBHelper.LoyaltyCardDbIdsGroups.cardID).value(card.id);
+                writer.name(DBHelper.LoyaltyCardDbIdsGroups.groupID).value(group._id);
+                writer.endObject();
+            }
+
+            if(Thread.currentThread().isInterrupted())
+            {
+                cardCursor2.close();
+                throw new InterruptedException();
+            }
+        }
+
+        cardCursor2.close();
+        writer.endArray();
+
+        writer.endObject();
+        writer.close();
+    }
+}
@@ -0,0 +1,338 @@
+package protect.card_locker;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for importing a database from JSON formatted data, as written
+ * by JsonDatabaseExporter.
+ *
+ * The data is read with a pull parser and every record is written to the
+ * database as soon as it has been read, so large exports never have to be
+ * held in memory as a whole.
+ */
+public class JsonDatabaseImporter implements DatabaseImporter
+{
+    /**
+     * Check if the given text starts with a JSON object, ignoring
+     * leading whitespace and a byte order mark.
+     */
+    static boolean looksLikeJson(String prefix)
+    {
+        for(int i = 0; i < prefix.length(); i++)
+        {
+            char c = prefix.charAt(i);
+
+            if(c == '\uFEFF' || Character.isWhitespace(c))
+            {
+                continue;
+            }
+
+            return c == '{';
+        }
+
+        return false;
+    }
+
+    public boolean canImport(String prefix)
+    {
+        return looksLikeJson(prefix);
+    }
+
+    public void importData(DBHelper db, Reader input) throws IOException, FormatException, InterruptedException
+    {
+        JsonReader reader = new JsonReader(input);
+
+        SQLiteDatabase database = db.getWritableDatabase();
+        database.beginTransaction();
+
+        // Mappings may refer to cards or groups which appear later in
+        // the stream, so they are only applied once everything else is in.
+        Map<Integer, List<Group>> cardGroups = new LinkedHashMap<>();
+
+        try
+        {
+            reader.beginObject();
+
+            while(reader.hasNext())
+            {
+                String name = reader.nextName();
+
+                if(name.equals(JsonDatabaseExporter.VERSION_KEY))
+                {
+                    int version = reader.nextInt();
+                    if(version != JsonDatabaseExporter.VERSION)
+                    {
+                        throw new FormatException(String.format("No code to parse version %s", version));
+                    }
+                }
+                else if(name.equals(DBHelper.LoyaltyCardDbGroups.TABLE))
+                {
+                    reader.beginArray();
+                    while(reader.hasNext())
+                    {
+                        importGroup(database, db, reader);
+                        checkInterrupted();
+                    }
+                    reader.endArray();
+                }
+                else if(name.equals(DBHelper.LoyaltyCardDbIds.TABLE))
+                {
+                    reader.beginArray();
+                    while(reader.hasNext())
+                    {
+                        importLoyaltyCard(database, db, reader);
+                        checkInterrupted();
+                    }
+                    reader.endArray();
+                }
+                else if(name.equals(DBHelper.LoyaltyCardDbIdsGroups.TABLE))
+                {
+                    reader.beginArray();
+                    while(reader.hasNext())
+                    {
+                        readCardGroupMapping(reader, cardGroups);
+                        checkInterrupted();
+                    }
+                    reader.endArray();
+                }
+                else
+                {
+                    // Unknown section, most likely written by a newer version
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            // Refuse trailing garbage, it means the file is not what we expect
+            if(reader.peek() != JsonToken.END_DOCUMENT)
+            {
+                throw new FormatException("Unexpected data after end of JSON document");
+            }
+
+            for(Map.Entry<Integer, List<Group>> entry : cardGroups.entrySet())
+            {
+                db.setLoyaltyCardGroups(database, entry.getKey(), entry.getValue());
+            }
+
+            database.setTransactionSuccessful();
+        }
+        catch(IllegalArgumentException | IllegalStateException | NumberFormatException e)
+        {
+            throw new FormatException("Issue parsing JSON data", e);
+        }
+        finally
+        {
+            database.endTransaction();
+            database.close();
+
+            // Cards read while importing saw the database before the commit
+            db.cardsChanged();
+            db.groupsChanged();
+        }
+
+        reader.close();
+    }
+
+    private void checkInterrupted() throws InterruptedException
+    {
+        if(Thread.currentThread().isInterrupted())
+        {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Read a string value, accepting JSON null as the empty string.
+     */
+    private String nextString(JsonReader reader) throws IOException
+    {
+        if(reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return "";
+        }
+
+        return reader.nextString();
+    }
+
+    /**
+     * Import a single loyalty card into the database using the given
+     * session.
+     */
+    private void importLoyaltyCard(SQLiteDatabase database, DBHelper helper, JsonReader reader)
+            throws IOException, FormatException
+    {
+        Integer id = null;
+        String store = "";
+        String note = "";
+        Date expiry = null;
+        String cardId = "";
+        String barcodeType = "";
+        Integer headerColor = null;
+        int starStatus = 0;
+
+        reader.beginObject();
+
+        while(reader.hasNext())
+        {
+            String name = reader.nextName();
+
+            if(reader.peek() == JsonToken.NULL)
+            {
+                reader.nextNull();
+                continue;
+            }
+
+            switch(name)
+            {
+                case DBHelper.LoyaltyCardDbIds.ID:
+                    id = reader.nextInt();
+                    break;
+                case DBHelper.LoyaltyCardDbIds.STORE:
+                    store = nextString(reader);
+                    break;
+                case DBHelper.LoyaltyCardDbIds.NOTE:
+                    note = nextString(reader);
+                    break;
+                case DBHelper.LoyaltyCardDbIds.EXPIRY:
+                    expiry = new Date(reader.nextLong());
+                    break;
+                case DBHelper.LoyaltyCardDbIds.CARD_ID:
+                    cardId = nextString(reader);
+                    break;
+                case DBHelper.LoyaltyCardDbIds.HEADER_COLOR:
+                    headerColor = reader.nextInt();
+                    break;
+                case DBHelper.LoyaltyCardDbIds.BARCODE_TYPE:
+                    barcodeType = nextString(reader);
+                    break;
+                case DBHelper.LoyaltyCardDbIds.STAR_STATUS:
+                    starStatus = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+
+        reader.endObject();
+
+        if(id == null)
+        {
+            throw new FormatException("Field not used but expected: " + DBHelper.LoyaltyCardDbIds.ID);
+        }
+
+        if(id < 0)
+        {
+            throw new FormatException("Card id must not be negative: " + id);
+        }
+
+        if(store.isEmpty())
+        {
+            throw new FormatException("No store listed, but is required");
+        }
+
+        if(cardId.isEmpty())
+        {
+            throw new FormatException("No card ID listed, but is required");
+        }
+
+        if (starStatus != 1) starStatus = 0;
+        helper.insertLoyaltyCard(database, id, store, note, expiry, cardId, barcodeType, headerColor, starStatus);
+    }
+
+    /**
+     * Import a single group into the database using the given
+     * session.
+     */
+    private void importGroup(SQLiteDatabase database, DBHelper helper, JsonReader reader)
+            throws IOException, FormatException
+    {
+        String id = "";
+
+        reader.beginObject();
+
+        while(reader.hasNext())
+        {
+            if(reader.nextName().equals(DBHelper.LoyaltyCardDbGroups.ID))
+            {
+                id = nextString(reader);
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if(id.isEmpty())
+        {
+            throw new FormatException("Field not used but expected: " + DBHelper.LoyaltyCardDbGroups.ID);
+        }
+
+        helper.insertGroup(database, id);
+    }
+
+    /**
+     * Read a single card to group mapping, to be written once the
+     * whole stream has been read.
+     */
+    private void readCardGroupMapping(JsonReader reader, Map<Integer, List<Group>> cardGroups)
+            throws IOException, FormatException
+    {
+        Integer cardId = null;
+        String groupId = "";
+
+        reader.beginObject();
+
+        while(reader.hasNext())
+        {
+            String name = reader.nextName();
+
+            if(name.equals(DBHelper.LoyaltyCardDbIdsGroups.cardID))
+            {
+                cardId = reader.nextInt();
+            }
+            else if(name.equals(DBHelper.LoyaltyCardDbIdsGroups.groupID))
+            {
+                groupId = nextString(reader);
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if(cardId == null || groupId.isEmpty())
+        {
+            throw new FormatException("Incomplete card group mapping");
+        }
+
+        if(cardId < 0)
+        {
+            throw new FormatException("Card id must not be negative: " + cardId);
+        }
+
+        List<Group> groups = cardGroups.get(cardId);
+        if(groups == null)
+        {
+            groups = new ArrayList<>();
+            cardGroups.put(cardId, groups);
+        }
+        groups.add(new Group(groupId));
+    }
+}
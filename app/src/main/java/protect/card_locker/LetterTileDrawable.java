@@ -0,0 +1,214 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.widget.ImageView;
+
+/**
+ * Draws a letter tile, a solid color with the first letter of the store
+ * on it, on demand instead of keeping a bitmap of it. The tile colors and
+ * letters are those of the LetterBitmap it replaces, originally from
+ * https://github.com/andOTP/andOTP/blob/master/app/src/main/java/org/shadowice/flocke/andotp/Utilities/LetterBitmap.java
+ *
+ * The paints and typeface are shared by all tiles, which is fine as tiles
+ * are only drawn on the main thread. A tile can be pointed at another
+ * store with setTile(), so a recycled list row does not allocate anything.
+ * This also replaces the cache of rendered tile bitmaps the card list had
+ * before, as there are no bitmaps left to share.
+ */
+class LetterTileDrawable extends Drawable
+{
+    private static final Typeface TYPEFACE = Typeface.create("sans-serif-light", Typeface.BOLD);
+    private static final TextPaint TEXT_PAINT = new TextPaint();
+    private static final Paint BACKGROUND_PAINT = new Paint();
+
+    /**
+     * The number of available tile colors
+     */
+    private static final int NUM_OF_TILE_COLORS = 8;
+    /**
+     * The tile colors, read from the resources only once
+     */
+    private static int[] sTileColors;
+
+    static
+    {
+        TEXT_PAINT.setTypeface(TYPEFACE);
+        TEXT_PAINT.setTextAlign(Paint.Align.CENTER);
+        TEXT_PAINT.setAntiAlias(true);
+    }
+
+    private final char[] letter = new char[1];
+    private final Rect letterBounds = new Rect();
+    private final int size;
+    private final int fontSize;
+    private int backgroundColor;
+    private int textColor;
+    private int alpha = 255;
+    private ColorFilter colorFilter;
+
+    LetterTileDrawable(Context context)
+    {
+        size = context.getResources().getDimensionPixelSize(R.dimen.cardThumbnailSize);
+        fontSize = context.getResources().getDimensionPixelSize(R.dimen.tileLetterFontSize);
+    }
+
+    /**
+     * Shows the tile of the given store in the view, reusing the tile the
+     * view already has if there is one. Clears the view if the store name
+     * is empty.
+     */
+    static void setTile(ImageView view, String store, Integer backgroundColor)
+    {
+        if(store.length() == 0)
+        {
+            view.setImageDrawable(null);
+            return;
+        }
+
+        LetterTileDrawable tile;
+        if(view.getDrawable() instanceof LetterTileDrawable)
+        {
+            tile = (LetterTileDrawable) view.getDrawable();
+        }
+        else
+        {
+            tile = new LetterTileDrawable(view.getContext());
+            view.setImageDrawable(tile);
+        }
+
+        if(backgroundColor == null)
+        {
+            backgroundColor = getDefaultColor(view.getContext(), store);
+        }
+
+        tile.set(getLetter(store), backgroundColor,
+                Utils.needsDarkForeground(backgroundColor) ? Color.BLACK : Color.WHITE);
+    }
+
+    /**
+     * @param displayName The name used to create the letter for the tile
+     * @return The letter shown on the tile
+     */
+    static char getLetter(String displayName)
+    {
+        return displayName.substring(0, 1).toUpperCase().charAt(0);
+    }
+
+    /**
+     * Determine the color which the letter tile will use if no default
+     * color is provided.
+     */
+    public static int getDefaultColor(Context context, String key)
+    {
+        // String.hashCode() is not supposed to change across java versions, so
+        // this should guarantee the same key always maps to the same color
+        final int color = Math.abs(key.hashCode()) % NUM_OF_TILE_COLORS;
+        return getTileColors(context)[color];
+    }
+
+    private static synchronized int[] getTileColors(Context context)
+    {
+        if(sTileColors == null)
+        {
+            final Resources res = context.getResources();
+
+            TypedArray colors = res.obtainTypedArray(R.array.letter_tile_colors);
+            sTileColors = new int[NUM_OF_TILE_COLORS];
+            for(int index = 0; index < NUM_OF_TILE_COLORS; index++)
+            {
+                sTileColors[index] = colors.getColor(index, Color.BLACK);
+            }
+            colors.recycle();
+        }
+
+        return sTileColors;
+    }
+
+    void set(char letter, int backgroundColor, int textColor)
+    {
+        if(this.letter[0] == letter && this.backgroundColor == backgroundColor && this.textColor == textColor)
+        {
+            return;
+        }
+
+        this.letter[0] = letter;
+        this.backgroundColor = backgroundColor;
+        this.textColor = textColor;
+
+        TEXT_PAINT.setTextSize(fontSize);
+        TEXT_PAINT.getTextBounds(this.letter, 0, 1, letterBounds);
+
+        invalidateSelf();
+    }
+
+    char getLetter()
+    {
+        return letter[0];
+    }
+
+    int getBackgroundColor()
+    {
+        return backgroundColor;
+    }
+
+    @Override
+    public void draw(Canvas canvas)
+    {
+        Rect bounds = getBounds();
+
+        BACKGROUND_PAINT.setColor(backgroundColor);
+        BACKGROUND_PAINT.setAlpha(Color.alpha(backgroundColor) * alpha / 255);
+        BACKGROUND_PAINT.setColorFilter(colorFilter);
+        canvas.drawRect(bounds, BACKGROUND_PAINT);
+
+        TEXT_PAINT.setColor(textColor);
+        TEXT_PAINT.setAlpha(Color.alpha(textColor) * alpha / 255);
+        TEXT_PAINT.setColorFilter(colorFilter);
+        TEXT_PAINT.setTextSize(fontSize);
+        canvas.drawText(letter, 0, 1, bounds.exactCenterX(),
+                bounds.exactCenterY() + letterBounds.height() / 2.0f, TEXT_PAINT);
+    }
+
+    @Override
+    public int getIntrinsicWidth()
+    {
+        return size;
+    }
+
+    @Override
+    public int getIntrinsicHeight()
+    {
+        return size;
+    }
+
+    @Override
+    public void setAlpha(int alpha)
+    {
+        this.alpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter)
+    {
+        this.colorFilter = colorFilter;
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity()
+    {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
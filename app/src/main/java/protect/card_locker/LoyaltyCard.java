@@ -2,41 +2,26 @@ package protect.card_locker;
 
 import android.database.Cursor;
 
-import java.text.DateFormat;
 import java.util.Date;
 
-import androidx.annotation.Nullable;
-
-public class LoyaltyCard
+public class LoyaltyCard extends CardRecord
 {
-    public final int id;
-    public final String store;
-    public final String note;
-    public final Date expiry;
-    public final String cardId;
-    public final String barcodeType;
-
-    @Nullable
-    public final Integer headerColor;
-
-    @Nullable
-    public final Integer headerTextColor;
-
-    public final int starStatus;
-
     public LoyaltyCard(final int id, final String store, final String note, final Date expiry, final String cardId,
                        final String barcodeType, final Integer headerColor, final Integer headerTextColor,
                        final int starStatus)
     {
-        this.id = id;
-        this.store = store;
-        this.note = note;
-        this.expiry = expiry;
-        this.cardId = cardId;
-        this.barcodeType = barcodeType;
-        this.headerColor = headerColor;
-        this.headerTextColor = headerTextColor;
-        this.starStatus = starStatus;
+        super(id, store, note, expiry, cardId, barcodeType, headerColor, headerTextColor, starStatus);
+    }
+
+    public static LoyaltyCard fromRecord(CardRecord record)
+    {
+        if(record instanceof LoyaltyCard)
+        {
+            return (LoyaltyCard) record;
+        }
+
+        return new LoyaltyCard(record.id, record.store, record.note, record.expiry, record.cardId,
+                record.barcodeType, record.headerColor, record.headerTextColor, record.starStatus);
     }
 
     public static LoyaltyCard toLoyaltyCard(Cursor cursor)
@@ -6,22 +6,14 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CursorAdapter;
-import android.widget.ImageView;
-import android.widget.TextView;
-
-import java.text.DateFormat;
-import java.util.Date;
 
 import protect.card_locker.preferences.Settings;
 
 class LoyaltyCardCursorAdapter extends CursorAdapter
 {
-    Settings settings;
-
     public LoyaltyCardCursorAdapter(Context context, Cursor cursor)
     {
         super(context, cursor, 0);
-        settings = new Settings(context);
     }
 
     // The newView method is used to inflate a new view and return it,
@@ -29,7 +21,9 @@ class LoyaltyCardCursorAdapter extends CursorAdapter
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent)
     {
-        return LayoutInflater.from(context).inflate(R.layout.loyalty_card_layout, parent, false);
+        View view = LayoutInflater.from(context).inflate(R.layout.loyalty_card_layout, parent, false);
+        view.setTag(new LoyaltyCardViewHolder(view));
+        return view;
     }
 
     // The bindView method is used to bind all data to a given view
@@ -37,51 +31,7 @@ class LoyaltyCardCursorAdapter extends CursorAdapter
     @Override
     public void bindView(View view, Context context, Cursor cursor)
     {
-        // Find fields to populate in inflated template
-        ImageView thumbnail = view.findViewById(R.id.thumbnail);
-        TextView storeField = view.findViewById(R.id.store);
-        TextView noteField = view.findViewById(R.id.note);
-        TextView expiryField = view.findViewById(R.id.expiry);
-        ImageView star = view.findViewById(R.id.star);
-
-        // Extract properties from cursor
-        LoyaltyCard loyaltyCard = LoyaltyCard.toLoyaltyCard(cursor);
-
-        // Populate fields with extracted properties
-        storeField.setText(loyaltyCard.store);
-
-        storeField.setTextSize(settings.getCardTitleListFontSize());
-
-        if(!loyaltyCard.note.isEmpty())
-        {
-            noteField.setVisibility(View.VISIBLE);
-            noteField.setText(loyaltyCard.note);
-            noteField.setTextSize(settings.getCardNoteListFontSize());
-        }
-        else
-        {
-            noteField.setVisibility(View.GONE);
-        }
-
-        if(loyaltyCard.expiry != null)
-        {
-            expiryField.setVisibility(View.VISIBLE);
-            int expiryString = R.string.expiryStateSentence;
-            if(Utils.hasExpired(loyaltyCard.expiry)) {
-                expiryString = R.string.expiryStateSentenceExpired;
-                expiryField.setTextColor(context.getResources().getColor(R.color.alert));
-            }
-            expiryField.setText(context.getString(expiryString, DateFormat.getDateInstance(DateFormat.LONG).format(loyaltyCard.expiry)));
-            expiryField.setTextSize(settings.getCardNoteListFontSize());
-        }
-        else
-        {
-            expiryField.setVisibility(View.GONE);
-        }
-
-        if (loyaltyCard.starStatus!=0) star.setVisibility(View.VISIBLE);
-            else star.setVisibility(View.GONE);
-
-        thumbnail.setImageBitmap(Utils.generateIcon(context, loyaltyCard.store, loyaltyCard.headerColor).getLetterTile());
+        LoyaltyCardViewHolder holder = (LoyaltyCardViewHolder) view.getTag();
+        holder.bind(LoyaltyCard.toLoyaltyCard(cursor), Settings.getSnapshot(context));
     }
 }
@@ -26,7 +26,6 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewTreeObserver;
 import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
@@ -319,7 +318,7 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
                 headingColorValue = loyaltyCard.headerColor;
                 if(headingColorValue == null)
                 {
-                    headingColorValue = LetterBitmap.getDefaultColor(this, loyaltyCard.store);
+                    headingColorValue = LetterTileDrawable.getDefaultColor(this, loyaltyCard.store);
                 }
             }
 
@@ -612,6 +611,12 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
             return;
         }
 
+        if(!barcodeType.isEmpty() && !BarcodeValidator.isValid(cardId, BarcodeFormat.valueOf(barcodeType)))
+        {
+            Snackbar.make(cardIdFieldView, R.string.invalidCardIdForBarcodeError, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+
         List<Group> selectedGroups = new ArrayList<>();
 
         for (Integer chipId : groupsChips.getCheckedChipIds()) {
@@ -619,8 +624,17 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
             selectedGroups.add((Group) chip.getTag());
         }
 
+        BarcodeDiskCache barcodeCache = BarcodeDiskCache.getInstance(this);
+
         if(updateLoyaltyCard)
-        {   //update of "starStatus" not necessary, since it cannot be changed in this activity (only in ViewActivity)
+        {
+            LoyaltyCard previous = db.getLoyaltyCard(loyaltyCardId);
+            if(previous != null && (!previous.cardId.equals(cardId) || !previous.barcodeType.equals(barcodeType)))
+            {
+                barcodeCache.invalidate(loyaltyCardId);
+            }
+
+            //update of "starStatus" not necessary, since it cannot be changed in this activity (only in ViewActivity)
             db.updateLoyaltyCard(loyaltyCardId, store, note, expiry, cardId, barcodeType, headingColorValue);
             Log.i(TAG, "Updated " + loyaltyCardId + " to " + cardId);
         }
@@ -631,6 +645,11 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
 
         db.setLoyaltyCardGroups(loyaltyCardId, selectedGroups);
 
+        if(!barcodeType.isEmpty())
+        {
+            barcodeCache.prerender(loyaltyCardId, cardId, BarcodeFormat.valueOf(barcodeType));
+        }
+
         finish();
     }
 
@@ -673,6 +692,7 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
 
                         DBHelper db = new DBHelper(LoyaltyCardEditActivity.this);
                         db.deleteLoyaltyCard(loyaltyCardId);
+                        BarcodeDiskCache.getInstance(LoyaltyCardEditActivity.this).invalidate(loyaltyCardId);
 
                         ShortcutHelper.removeShortcut(LoyaltyCardEditActivity.this, loyaltyCardId);
 
@@ -719,24 +739,9 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
     }
 
     private void generateBarcode(final String cardId, final BarcodeFormat barcodeFormat) {
-        if (barcodeImage.getHeight() == 0) {
-            Log.d(TAG, "ImageView size is not known known at start, waiting for load");
-            // The size of the ImageView is not yet available as it has not
-            // yet been drawn. Wait for it to be drawn so the size is available.
-            barcodeImage.getViewTreeObserver().addOnGlobalLayoutListener(
-                    new ViewTreeObserver.OnGlobalLayoutListener() {
-                        @Override
-                        public void onGlobalLayout() {
-                            barcodeImage.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-
-                            Log.d(TAG, "ImageView size now known");
-                            new BarcodeImageWriterTask(barcodeImage, cardId, barcodeFormat).execute();
-                        }
-                    });
-        } else {
-            Log.d(TAG, "ImageView size known known, creating barcode");
-            new BarcodeImageWriterTask(barcodeImage, cardId, barcodeFormat).execute();
-        }
+        // Drawn from the matrix, so the ImageView size is not needed
+        BarcodeImageWriterTask task = new BarcodeImageWriterTask(barcodeImage, cardId, barcodeFormat).drawFromMatrix();
+        BarcodeRenderExecutor.getInstance().render(barcodeImage, task, BarcodeRenderExecutor.PRIORITY_VISIBLE);
 
         showBarcode();
     }
@@ -748,13 +753,7 @@ public class LoyaltyCardEditActivity extends AppCompatActivity
 
         thumbnail.setBackgroundColor(headingColorValue);
 
-        LetterBitmap letterBitmap = Utils.generateIcon(this, store, headingColorValue);
-
-        if (letterBitmap != null) {
-            thumbnail.setImageBitmap(letterBitmap.getLetterTile());
-        } else {
-            thumbnail.setImageBitmap(null);
-        }
+        LetterTileDrawable.setTile(thumbnail, store, headingColorValue);
 
         thumbnail.setMinimumWidth(thumbnail.getHeight());
     }
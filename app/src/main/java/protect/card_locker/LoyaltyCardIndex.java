@@ -0,0 +1,491 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps the CardSearchIndex of all loyalty cards, so searching the card
+ * list does not need the database.
+ *
+ * The index is built from the database by the first get(), which has to
+ * be called off the main thread. DBHelper then passes every card it adds,
+ * updates or deletes, and the next get() indexes the cards already in
+ * memory again with those changes, without reading the database. Only
+ * imports drop the index, as they write cards in a transaction that may
+ * not be committed.
+ *
+ * The cards found for the last few filters and groups are kept as well,
+ * so switching between tabs does not search again. Writing a card only
+ * drops the results it was in or may now be in, and changing the groups
+ * of a card only drops the results of the groups it entered or left.
+ *
+ * Group membership is kept as a GroupMembership, loaded once and then
+ * updated by DBHelper as cards change groups, so a combination of groups
+ * is evaluated without the database.
+ */
+public class LoyaltyCardIndex
+{
+    private static final String TAG = "Catima";
+
+    // A few filters for every tab, plus their neighbours being prefetched
+    static final int MAX_CACHED_RESULTS = 32;
+
+    /**
+     * Cards matching a filter in a group, in the order of the index.
+     */
+    public static class Results
+    {
+        public final List<LoyaltyCard> cards;
+
+        // Whether cards are near matches of a misspelled filter
+        public final boolean fuzzy;
+
+        // Number of cards in all groups
+        public final int totalCount;
+
+        Results(List<LoyaltyCard> cards, boolean fuzzy, int totalCount)
+        {
+            this.cards = Collections.unmodifiableList(cards);
+            this.fuzzy = fuzzy;
+            this.totalCount = totalCount;
+        }
+    }
+
+    private static class ResultsKey
+    {
+        final String filter;
+
+        // Null for all cards
+        final GroupFilter groups;
+
+        ResultsKey(String filter, GroupFilter groups)
+        {
+            this.filter = filter;
+            this.groups = groups;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof ResultsKey))
+            {
+                return false;
+            }
+
+            ResultsKey other = (ResultsKey) o;
+            return filter.equals(other.filter) && Objects.equals(groups, other.groups);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * filter.hashCode() + Objects.hashCode(groups);
+        }
+    }
+
+    // One index per application, as every application has its own database
+    private static final WeakHashMap<Context, LoyaltyCardIndex> instances = new WeakHashMap<>();
+
+    private CardSearchIndex<LoyaltyCard> index;
+    private int generation = 0;
+
+    // Cards written since index was built, null for deleted ones
+    private final Map<Integer, LoyaltyCard> pendingCards = new HashMap<>();
+
+    // Least recently used first
+    private final LinkedHashMap<ResultsKey, Results> results = new LinkedHashMap<ResultsKey, Results>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ResultsKey, Results> eldest)
+        {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+    private int resultsGeneration = 0;
+
+    private GroupMembership membership;
+    private int membershipGeneration = 0;
+
+    public static synchronized LoyaltyCardIndex getInstance(Context context)
+    {
+        Context application = context.getApplicationContext();
+
+        LoyaltyCardIndex instance = instances.get(application);
+        if(instance == null)
+        {
+            instance = new LoyaltyCardIndex();
+            instances.put(application, instance);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Returns the index, building it from db if it was never built or
+     * dropped, and updating it with the cards written since otherwise.
+     */
+    public CardSearchIndex<LoyaltyCard> get(DBHelper db)
+    {
+        int buildGeneration;
+        CardSearchIndex<LoyaltyCard> previous;
+        Map<Integer, LoyaltyCard> changed;
+        synchronized(this)
+        {
+            if(index != null && pendingCards.isEmpty())
+            {
+                return index;
+            }
+
+            buildGeneration = generation;
+            previous = index;
+            changed = new HashMap<>(pendingCards);
+        }
+
+        long start = System.currentTimeMillis();
+        CardSearchIndex<LoyaltyCard> built;
+        if(previous != null)
+        {
+            built = previous.update(changed);
+            Log.d(TAG, "Updated " + changed.size() + " of " + built.size() + " indexed cards in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        else
+        {
+            built = CardSearchIndex.build(db.getLoyaltyCards("", null));
+            Log.d(TAG, "Indexed " + built.size() + " cards in " + (System.currentTimeMillis() - start) + "ms");
+        }
+
+        synchronized(this)
+        {
+            // Only keep it if no card was written while indexing them
+            if(generation == buildGeneration)
+            {
+                index = built;
+                pendingCards.clear();
+            }
+        }
+
+        return built;
+    }
+
+    /**
+     * Returns the cards matching filter in the given groups, or in all
+     * groups if groups is null, searching the index if they are not
+     * cached. The filter must not have wildcards. Has to be called off the
+     * main thread.
+     */
+    public Results search(DBHelper db, String filter, GroupFilter groups)
+    {
+        ResultsKey key = new ResultsKey(filter, groups);
+
+        int searchGeneration;
+        synchronized(this)
+        {
+            Results cached = results.get(key);
+            if(cached != null)
+            {
+                return cached;
+            }
+
+            searchGeneration = resultsGeneration;
+        }
+
+        CardSearchIndex<LoyaltyCard> cardIndex = get(db);
+
+        BitSet groupCardIds = null;
+        if(groups != null)
+        {
+            groupCardIds = getGroupCards(db, groups);
+        }
+
+        List<LoyaltyCard> cards = retainGroups(cardIndex.search(filter), groupCardIds);
+        boolean fuzzy = false;
+
+        if(cards.isEmpty() && !filter.trim().isEmpty())
+        {
+            cards = retainGroups(cardIndex.searchFuzzy(filter), groupCardIds);
+            fuzzy = !cards.isEmpty();
+        }
+
+        Results found = new Results(cards, fuzzy, cardIndex.size());
+
+        synchronized(this)
+        {
+            // Only keep them if no card or group was written while searching
+            if(resultsGeneration == searchGeneration)
+            {
+                results.put(key, found);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Returns the cards matching filter in the given groups if they are
+     * cached, or null. Never reads the database.
+     */
+    public synchronized Results getCached(String filter, GroupFilter groups)
+    {
+        return results.get(new ResultsKey(filter, groups));
+    }
+
+    /**
+     * Returns the ids of the cards selected by groups, loading the group
+     * membership of all cards from db if it is not loaded yet.
+     */
+    public BitSet getGroupCards(DBHelper db, GroupFilter groups)
+    {
+        int loadGeneration;
+        synchronized(this)
+        {
+            if(membership != null)
+            {
+                return membership.getCards(groups);
+            }
+
+            loadGeneration = membershipGeneration;
+        }
+
+        GroupMembership loaded = db.getGroupMembership();
+
+        synchronized(this)
+        {
+            // Only keep it if no card changed groups while reading them
+            if(membershipGeneration == loadGeneration)
+            {
+                membership = loaded;
+            }
+        }
+
+        return loaded.getCards(groups);
+    }
+
+    /**
+     * Keeps the cards in the groups, or all of them if groupCardIds is
+     * null.
+     */
+    static <T extends CardRecord> List<T> retainGroups(List<T> cards, BitSet groupCardIds)
+    {
+        if(groupCardIds == null)
+        {
+            return cards;
+        }
+
+        List<T> result = new ArrayList<>();
+        for(T card : cards)
+        {
+            // See GroupMembership about negative card ids
+            if(card.id >= 0 && groupCardIds.get(card.id))
+            {
+                result.add(card);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether get() returns the index without indexing any card.
+     */
+    public synchronized boolean isBuilt()
+    {
+        return index != null && pendingCards.isEmpty();
+    }
+
+    /**
+     * Drops the index and all results, the next get() reads every card
+     * from the database again.
+     */
+    public synchronized void invalidate()
+    {
+        index = null;
+        pendingCards.clear();
+        generation++;
+
+        results.clear();
+        resultsGeneration++;
+    }
+
+    public synchronized void cardAdded(LoyaltyCard card)
+    {
+        cardChanged(card.id, card, 1);
+    }
+
+    public synchronized void cardUpdated(LoyaltyCard card)
+    {
+        cardChanged(card.id, card, 0);
+    }
+
+    public synchronized void cardDeleted(int cardId)
+    {
+        cardChanged(cardId, null, -1);
+    }
+
+    /**
+     * Queues the card for the next get(), and drops the results it was in
+     * or may now be in. The other results are kept, with their total
+     * count changed by countChange.
+     */
+    private void cardChanged(int cardId, LoyaltyCard card, int countChange)
+    {
+        // Without an index the next get() reads the card anyway
+        if(index != null)
+        {
+            pendingCards.put(cardId, card);
+        }
+        generation++;
+
+        Iterator<Map.Entry<ResultsKey, Results>> entries = results.entrySet().iterator();
+        while(entries.hasNext())
+        {
+            Map.Entry<ResultsKey, Results> entry = entries.next();
+            String filter = entry.getKey().filter;
+            Results found = entry.getValue();
+
+            boolean affected = containsCard(found.cards, cardId);
+            if(card != null)
+            {
+                // An empty result may now get near matches, and near
+                // matches may now have a closer one
+                affected |= CardFilter.matches(card, filter) || found.fuzzy
+                        || (found.cards.isEmpty() && !filter.trim().isEmpty());
+            }
+
+            if(affected)
+            {
+                entries.remove();
+            }
+            else if(countChange != 0)
+            {
+                entry.setValue(new Results(found.cards, found.fuzzy, found.totalCount + countChange));
+            }
+        }
+
+        resultsGeneration++;
+    }
+
+    /**
+     * Updates the group membership of a card now being in exactly the
+     * given groups, and drops the results it may have entered or left.
+     */
+    public synchronized void groupsChanged(int cardId, List<Group> groups)
+    {
+        Set<String> groupIds = new HashSet<>();
+        for(Group group : groups)
+        {
+            groupIds.add(group._id);
+        }
+
+        if(membership != null)
+        {
+            membership.setGroups(cardId, groupIds);
+        }
+        membershipGeneration++;
+
+        Iterator<Map.Entry<ResultsKey, Results>> entries = results.entrySet().iterator();
+        while(entries.hasNext())
+        {
+            Map.Entry<ResultsKey, Results> entry = entries.next();
+            GroupFilter resultGroups = entry.getKey().groups;
+
+            // Results of all cards do not depend on groups
+            if(resultGroups == null)
+            {
+                continue;
+            }
+
+            if(resultGroups.references(groupIds) || containsCard(entry.getValue().cards, cardId))
+            {
+                entries.remove();
+            }
+        }
+
+        resultsGeneration++;
+    }
+
+    public synchronized void groupRenamed(String groupId, String newGroupId)
+    {
+        if(membership != null)
+        {
+            membership.renameGroup(groupId, newGroupId);
+        }
+        membershipGeneration++;
+
+        dropGroupResults(groupId);
+    }
+
+    public synchronized void groupDeleted(String groupId)
+    {
+        if(membership != null)
+        {
+            membership.removeGroup(groupId);
+        }
+        membershipGeneration++;
+
+        dropGroupResults(groupId);
+    }
+
+    /**
+     * Drops the group membership of all cards, which is loaded again when
+     * next needed. Importers call this as they write memberships inside a
+     * transaction that may not be committed.
+     */
+    public synchronized void allGroupsChanged()
+    {
+        membership = null;
+        membershipGeneration++;
+
+        Iterator<ResultsKey> keys = results.keySet().iterator();
+        while(keys.hasNext())
+        {
+            if(keys.next().groups != null)
+            {
+                keys.remove();
+            }
+        }
+
+        resultsGeneration++;
+    }
+
+    private void dropGroupResults(String groupId)
+    {
+        Iterator<ResultsKey> keys = results.keySet().iterator();
+        while(keys.hasNext())
+        {
+            GroupFilter resultGroups = keys.next().groups;
+            if(resultGroups != null && resultGroups.groupIds.contains(groupId))
+            {
+                keys.remove();
+            }
+        }
+
+        resultsGeneration++;
+    }
+
+    private static boolean containsCard(List<LoyaltyCard> cards, int cardId)
+    {
+        for(LoyaltyCard card : cards)
+        {
+            if(card.id == cardId)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,278 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.os.AsyncTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the cards, and optionally the groups, shown by MainActivity off
+ * the main thread. Loads run one after the other, so cancelling a load
+ * that has not started yet skips its queries entirely.
+ *
+ * Cards are searched in the LoyaltyCardIndex, which only reads the
+ * database after cards were written. When a search only narrows the
+ * previous one, the cards are filtered from the previous result instead.
+ * If no card matches, stores with a few typos in the filter are shown.
+ *
+ * Results kept by the index can be shown right away with loadCached(),
+ * and Prefetch searches those of tabs likely to be selected next.
+ */
+class LoyaltyCardListLoader extends AsyncTask<Void, Void, LoyaltyCardListLoader.Result>
+{
+    interface Listener
+    {
+        void onCardListLoaded(Result result);
+    }
+
+    static class Result
+    {
+        String filter;
+
+        // Groups the cards are in, null for all cards
+        GroupFilter groupFilter;
+
+        // Whether groupFilter is still the combination of groups the user
+        // picked, only set when the groups were reloaded
+        boolean combined;
+
+        // Null if the groups were not reloaded
+        List<Group> groups;
+
+        // Tab the cards were loaded for, only set when the groups were reloaded
+        int selectedTab;
+
+        List<LoyaltyCard> cards;
+        int totalCount;
+
+        // Whether cards are near matches of a misspelled filter
+        boolean fuzzy;
+    }
+
+    private static volatile Executor executor = AsyncTask.SERIAL_EXECUTOR;
+
+    private final DBHelper db;
+    private final LoyaltyCardIndex index;
+    private final String filter;
+    private final GroupFilter groupFilter;
+    private final boolean loadGroups;
+    private final int selectedTab;
+    private final List<LoyaltyCard> narrowFrom;
+    private final int totalCount;
+    private final Listener listener;
+
+    /**
+     * Loads the cards matching filter in groupFilter, or in all groups if
+     * it is null.
+     */
+    LoyaltyCardListLoader(Context context, String filter, GroupFilter groupFilter, Listener listener)
+    {
+        this(context, filter, groupFilter, false, 0, null, 0, listener);
+    }
+
+    /**
+     * Filters the cards of a previous result, which must match a filter
+     * that filter narrows, see CardFilter.canNarrow.
+     */
+    LoyaltyCardListLoader(Context context, String filter, Result previous, Listener listener)
+    {
+        this(context, filter, previous.groupFilter, false, 0, previous.cards, previous.totalCount, listener);
+    }
+
+    /**
+     * Loads the groups, then the cards matching filter in the group shown
+     * by selectedTab. The first tab, or one past the last group, shows all
+     * cards. If combined is not null, the cards in the groups of combined
+     * that still exist are loaded instead.
+     */
+    LoyaltyCardListLoader(Context context, String filter, int selectedTab, GroupFilter combined, Listener listener)
+    {
+        this(context, filter, combined, true, selectedTab, null, 0, listener);
+    }
+
+    private LoyaltyCardListLoader(Context context, String filter, GroupFilter groupFilter, boolean loadGroups,
+                                  int selectedTab, List<LoyaltyCard> narrowFrom, int totalCount,
+                                  Listener listener)
+    {
+        super();
+
+        this.db = new DBHelper(context.getApplicationContext());
+        this.index = LoyaltyCardIndex.getInstance(context);
+        this.filter = filter;
+        this.groupFilter = groupFilter;
+        this.loadGroups = loadGroups;
+        this.selectedTab = selectedTab;
+        this.narrowFrom = narrowFrom;
+        this.totalCount = totalCount;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the cards matching filter in groupFilter if the index still
+     * has them, or null. Does not read the database, so can be used on the
+     * main thread.
+     */
+    static Result loadCached(Context context, String filter, GroupFilter groupFilter)
+    {
+        LoyaltyCardIndex.Results found = LoyaltyCardIndex.getInstance(context).getCached(filter, groupFilter);
+        if(found == null)
+        {
+            return null;
+        }
+
+        Result result = new Result();
+        result.filter = filter;
+        result.groupFilter = groupFilter;
+        result.cards = found.cards;
+        result.fuzzy = found.fuzzy;
+        result.totalCount = found.totalCount;
+        return result;
+    }
+
+    /**
+     * Lets tests run loads and prefetches on their own executor, or on
+     * the default serial one again if executor is null.
+     */
+    static void setExecutor(Executor executor)
+    {
+        LoyaltyCardListLoader.executor = executor != null ? executor : AsyncTask.SERIAL_EXECUTOR;
+    }
+
+    void start()
+    {
+        executeOnExecutor(executor);
+    }
+
+    boolean loadsGroups()
+    {
+        return loadGroups;
+    }
+
+    boolean isFullSearch()
+    {
+        return narrowFrom == null;
+    }
+
+    @Override
+    protected Result doInBackground(Void... params)
+    {
+        Result result = new Result();
+        result.filter = filter;
+        result.groupFilter = groupFilter;
+
+        if(narrowFrom != null)
+        {
+            result.cards = CardFilter.narrow(narrowFrom, filter);
+            result.totalCount = totalCount;
+
+            // Nothing left, so look for misspellings below
+            if(!result.cards.isEmpty())
+            {
+                return result;
+            }
+        }
+
+        if(loadGroups)
+        {
+            result.groups = db.getGroups();
+
+            if(selectedTab > 0 && selectedTab <= result.groups.size())
+            {
+                result.selectedTab = selectedTab;
+            }
+
+            // Groups may have been renamed or deleted since they were picked
+            if(groupFilter != null)
+            {
+                List<String> groupIds = new ArrayList<>();
+                for(Group group : result.groups)
+                {
+                    groupIds.add(group._id);
+                }
+
+                result.groupFilter = groupFilter.retain(groupIds);
+            }
+
+            result.combined = result.groupFilter != null;
+            if(!result.combined && result.selectedTab > 0)
+            {
+                result.groupFilter = GroupFilter.of(result.groups.get(result.selectedTab - 1)._id);
+            }
+        }
+
+        if(isCancelled())
+        {
+            return null;
+        }
+
+        if(CardFilter.hasWildcards(filter))
+        {
+            result.cards = db.getLoyaltyCards(filter, null);
+            if(result.groupFilter != null)
+            {
+                result.cards = LoyaltyCardIndex.retainGroups(result.cards, index.getGroupCards(db, result.groupFilter));
+            }
+            result.totalCount = db.getLoyaltyCardCount();
+            return result;
+        }
+
+        LoyaltyCardIndex.Results found = index.search(db, filter, result.groupFilter);
+        result.cards = found.cards;
+        result.fuzzy = found.fuzzy;
+        result.totalCount = found.totalCount;
+
+        return result;
+    }
+
+    @Override
+    protected void onPostExecute(Result result)
+    {
+        listener.onCardListLoaded(result);
+    }
+
+    /**
+     * Searches the cards matching a filter in each of the given groups, a
+     * null GroupFilter being all cards, so the index keeps them for
+     * loadCached().
+     */
+    static class Prefetch extends AsyncTask<Void, Void, Void>
+    {
+        private final DBHelper db;
+        private final LoyaltyCardIndex index;
+        private final String filter;
+        private final List<GroupFilter> groups;
+
+        Prefetch(Context context, String filter, List<GroupFilter> groups)
+        {
+            super();
+
+            this.db = new DBHelper(context.getApplicationContext());
+            this.index = LoyaltyCardIndex.getInstance(context);
+            this.filter = filter;
+            this.groups = groups;
+        }
+
+        void start()
+        {
+            executeOnExecutor(executor);
+        }
+
+        @Override
+        protected Void doInBackground(Void... params)
+        {
+            for(GroupFilter groupFilter : groups)
+            {
+                if(isCancelled())
+                {
+                    break;
+                }
+
+                index.search(db, filter, groupFilter);
+            }
+
+            return null;
+        }
+    }
+}
@@ -12,4 +12,11 @@ public class LoyaltyCardLockerApplication extends Application {
         Settings settings = new Settings(getApplicationContext());
         AppCompatDelegate.setDefaultNightMode(settings.getTheme());
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        BarcodeImageCache.getInstance().onTrimMemory(level);
+    }
 }
@@ -0,0 +1,174 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import protect.card_locker.preferences.Settings;
+
+/**
+ * Card list of MainActivity. New lists are diffed against the shown one
+ * on a background thread, so only the rows of added, removed or changed
+ * cards are updated.
+ */
+class LoyaltyCardRecyclerAdapter extends ListAdapter<LoyaltyCard, LoyaltyCardViewHolder>
+{
+    interface CardListener
+    {
+        void onCardClicked(LoyaltyCard card);
+
+        // The context menu is opened after this returns
+        void onCardLongClicked(LoyaltyCard card);
+    }
+
+    static final DiffUtil.ItemCallback<LoyaltyCard> DIFF_CALLBACK = new DiffUtil.ItemCallback<LoyaltyCard>()
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull LoyaltyCard oldCard, @NonNull LoyaltyCard newCard)
+        {
+            return oldCard.id == newCard.id;
+        }
+
+        // Only compares what a row shows
+        @Override
+        public boolean areContentsTheSame(@NonNull LoyaltyCard oldCard, @NonNull LoyaltyCard newCard)
+        {
+            return oldCard.store.equals(newCard.store)
+                    && oldCard.note.equals(newCard.note)
+                    && Objects.equals(oldCard.expiry, newCard.expiry)
+                    && Objects.equals(oldCard.headerColor, newCard.headerColor)
+                    && oldCard.starStatus == newCard.starStatus;
+        }
+    };
+
+    // Null for the default of AsyncListDiffer
+    private static volatile Executor diffExecutor = null;
+
+    private final Context context;
+    private final CardListener listener;
+
+    private int submitted = 0;
+    private int committed = 0;
+
+    public LoyaltyCardRecyclerAdapter(Context context, CardListener listener)
+    {
+        super(differConfig());
+        setHasStableIds(true);
+
+        this.context = context;
+        this.listener = listener;
+    }
+
+    /**
+     * Lets tests diff lists on their own executor, for adapters created
+     * afterwards. Null restores the default.
+     */
+    static void setDiffExecutor(Executor executor)
+    {
+        diffExecutor = executor;
+    }
+
+    private static AsyncDifferConfig<LoyaltyCard> differConfig()
+    {
+        AsyncDifferConfig.Builder<LoyaltyCard> config = new AsyncDifferConfig.Builder<>(DIFF_CALLBACK);
+        if(diffExecutor != null)
+        {
+            config.setBackgroundThreadExecutor(diffExecutor);
+        }
+        return config.build();
+    }
+
+    @Override
+    public void submitList(List<LoyaltyCard> cards)
+    {
+        final int generation = ++submitted;
+
+        // Only the latest list is committed, earlier ones are dropped
+        super.submitList(cards, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                committed = generation;
+            }
+        });
+    }
+
+    /**
+     * Returns true while a submitted list is still being diffed.
+     */
+    public boolean isUpdating()
+    {
+        return committed != submitted;
+    }
+
+    public LoyaltyCard getCard(int position)
+    {
+        return getItem(position);
+    }
+
+    @Override
+    public long getItemId(int position)
+    {
+        return getItem(position).id;
+    }
+
+    @NonNull
+    @Override
+    public LoyaltyCardViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType)
+    {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.loyalty_card_layout, parent, false);
+        final LoyaltyCardViewHolder holder = new LoyaltyCardViewHolder(view);
+
+        // Look the card up on click, the bound one may be outdated by a pending diff
+        view.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View v)
+            {
+                int position = holder.getAdapterPosition();
+                if(position != RecyclerView.NO_POSITION)
+                {
+                    listener.onCardClicked(getItem(position));
+                }
+            }
+        });
+
+        view.setOnLongClickListener(new View.OnLongClickListener()
+        {
+            @Override
+            public boolean onLongClick(View v)
+            {
+                int position = holder.getAdapterPosition();
+                if(position == RecyclerView.NO_POSITION)
+                {
+                    return true;
+                }
+
+                listener.onCardLongClicked(getItem(position));
+
+                // Not handled, so the row falls back to showing the context menu
+                return false;
+            }
+        });
+
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LoyaltyCardViewHolder holder, int position)
+    {
+        holder.bind(getItem(position), Settings.getSnapshot(context));
+    }
+}
@@ -39,7 +39,6 @@ import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.zxing.BarcodeFormat;
 
-import java.text.DateFormat;
 import java.util.List;
 
 import protect.card_locker.preferences.Settings;
@@ -290,12 +289,11 @@ public class LoyaltyCardViewActivity extends AppCompatActivity
         if(loyaltyCard.expiry != null) {
             expiryView.setVisibility(View.VISIBLE);
 
-            int expiryString = R.string.expiryStateSentence;
-            if(Utils.hasExpired(loyaltyCard.expiry)) {
-                expiryString = R.string.expiryStateSentenceExpired;
+            ExpiryDates.Expiry expiry = ExpiryDates.getInstance(this).getExpiry(loyaltyCard);
+            if(expiry.expired) {
                 expiryView.setTextColor(getResources().getColor(R.color.alert));
             }
-            expiryView.setText(getString(expiryString, DateFormat.getDateInstance(DateFormat.LONG).format(loyaltyCard.expiry)));
+            expiryView.setText(expiry.text);
         }
         else
         {
@@ -317,7 +315,7 @@ public class LoyaltyCardViewActivity extends AppCompatActivity
         }
         else
         {
-            backgroundHeaderColor = LetterBitmap.getDefaultColor(this, loyaltyCard.store);
+            backgroundHeaderColor = LetterTileDrawable.getDefaultColor(this, loyaltyCard.store);
         }
 
         collapsingToolbarLayout.setBackgroundColor(backgroundHeaderColor);
@@ -372,7 +370,7 @@ public class LoyaltyCardViewActivity extends AppCompatActivity
             else
             {
                 Log.d(TAG, "ImageView size known known, creating barcode");
-                new BarcodeImageWriterTask(barcodeImage, cardIdString, format).execute();
+                drawBarcode();
             }
 
             // Force redraw fullscreen state
@@ -532,6 +530,16 @@ public class LoyaltyCardViewActivity extends AppCompatActivity
         }
     }
 
+    private void drawBarcode()
+    {
+        BarcodeDiskCache diskCache = BarcodeDiskCache.getInstance(this);
+        diskCache.setViewSize(barcodeImage.getWidth(), barcodeImage.getHeight());
+
+        BarcodeImageWriterTask task = new BarcodeImageWriterTask(barcodeImage, cardIdString, format)
+                .setDiskCache(diskCache, loyaltyCardId);
+        BarcodeRenderExecutor.getInstance().render(barcodeImage, task, BarcodeRenderExecutor.PRIORITY_VISIBLE);
+    }
+
     private void redrawBarcodeAfterResize()
     {
         if (format != null) {
@@ -542,7 +550,7 @@ public class LoyaltyCardViewActivity extends AppCompatActivity
                             barcodeImage.getViewTreeObserver().removeOnGlobalLayoutListener(this);
 
                             Log.d(TAG, "ImageView size now known");
-                            new BarcodeImageWriterTask(barcodeImage, cardIdString, format).execute();
+                            drawBarcode();
                         }
                     });
         };
@@ -0,0 +1,82 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import protect.card_locker.preferences.Settings;
+
+/**
+ * Holds the views of a loyalty_card_layout row, so binding a card to a
+ * recycled row does not have to look them up again.
+ */
+class LoyaltyCardViewHolder extends RecyclerView.ViewHolder
+{
+    final ImageView thumbnail;
+    final TextView storeField;
+    final TextView noteField;
+    final TextView expiryField;
+    final ImageView star;
+
+    private final ColorStateList expiryColors;
+
+    LoyaltyCardViewHolder(View view)
+    {
+        super(view);
+
+        thumbnail = view.findViewById(R.id.thumbnail);
+        storeField = view.findViewById(R.id.store);
+        noteField = view.findViewById(R.id.note);
+        expiryField = view.findViewById(R.id.expiry);
+        star = view.findViewById(R.id.star);
+
+        expiryColors = expiryField.getTextColors();
+    }
+
+    void bind(LoyaltyCard loyaltyCard, Settings.Snapshot settings)
+    {
+        Context context = itemView.getContext();
+
+        storeField.setText(loyaltyCard.store);
+
+        storeField.setTextSize(settings.cardTitleListFontSize);
+
+        if(!loyaltyCard.note.isEmpty())
+        {
+            noteField.setVisibility(View.VISIBLE);
+            noteField.setText(loyaltyCard.note);
+            noteField.setTextSize(settings.cardNoteListFontSize);
+        }
+        else
+        {
+            noteField.setVisibility(View.GONE);
+        }
+
+        if(loyaltyCard.expiry != null)
+        {
+            expiryField.setVisibility(View.VISIBLE);
+            ExpiryDates.Expiry expiry = ExpiryDates.getInstance(context).getExpiry(loyaltyCard);
+            if(expiry.expired) {
+                expiryField.setTextColor(context.getResources().getColor(R.color.alert));
+            } else {
+                // The row may have shown an expired card before
+                expiryField.setTextColor(expiryColors);
+            }
+            expiryField.setText(expiry.text);
+            expiryField.setTextSize(settings.cardNoteListFontSize);
+        }
+        else
+        {
+            expiryField.setVisibility(View.GONE);
+        }
+
+        if (loyaltyCard.starStatus!=0) star.setVisibility(View.VISIBLE);
+            else star.setVisibility(View.GONE);
+
+        LetterTileDrawable.setTile(thumbnail, loyaltyCard.store, loyaltyCard.headerColor);
+    }
+}
@@ -4,14 +4,22 @@ import android.app.SearchManager;
 import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
-import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.text.TextUtils;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import android.util.Log;
 import android.view.ContextMenu;
 import android.view.GestureDetector;
@@ -20,22 +28,62 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.tabs.TabLayout;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import protect.card_locker.preferences.SettingsActivity;
 
-public class MainActivity extends AppCompatActivity implements GestureDetector.OnGestureListener
+public class MainActivity extends AppCompatActivity implements GestureDetector.OnGestureListener, LoyaltyCardListLoader.Listener
 {
     private static final String TAG = "Catima";
 
+    // How long typing has to pause before the card list is searched
+    static final long SEARCH_DELAY_MS = 150;
+
+    private static final String STATE_COMBINED_GROUPS = "combinedGroups";
+    private static final String STATE_COMBINED_ANY = "combinedAny";
+
     private Menu menu;
     private GestureDetector gestureDetector;
+    private LoyaltyCardRecyclerAdapter adapter;
+    private LoyaltyCard contextMenuCard;
+    private LoyaltyCardListLoader cardListLoader;
+    private LoyaltyCardListLoader.Prefetch prefetch;
+    private boolean updatingTabs = false;
+    private LoyaltyCardListLoader.Result lastResult;
+
+    // Groups picked in the group filter dialog, shown instead of the selected tab
+    private GroupFilter combinedGroups;
+    private int cardListQueries = 0;
+
+    private final Handler searchHandler = new Handler();
+
+    private final Runnable search = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            searchLoyaltyCardList(filter, getGroupFilter());
+        }
+    };
+
+    // Searches the tabs next to the selected one once the list is shown
+    private final MessageQueue.IdleHandler prefetchNeighbourTabs = new MessageQueue.IdleHandler()
+    {
+        @Override
+        public boolean queueIdle()
+        {
+            prefetchNeighbourTabs();
+
+            // Only once
+            return false;
+        }
+    };
     protected String filter = "";
     protected int selectedTab = 0;
 
@@ -47,14 +95,52 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
-        updateLoyaltyCardList(filter, null);
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_COMBINED_GROUPS)) {
+            List<String> groupIds = savedInstanceState.getStringArrayList(STATE_COMBINED_GROUPS);
+            setCombinedGroups(savedInstanceState.getBoolean(STATE_COMBINED_ANY)
+                    ? GroupFilter.any(groupIds) : GroupFilter.all(groupIds));
+        }
+
+        adapter = new LoyaltyCardRecyclerAdapter(this, new LoyaltyCardRecyclerAdapter.CardListener()
+        {
+            @Override
+            public void onCardClicked(LoyaltyCard loyaltyCard)
+            {
+                Intent i = new Intent(MainActivity.this, LoyaltyCardViewActivity.class);
+                i.setAction("");
+                final Bundle b = new Bundle();
+                b.putInt("id", loyaltyCard.id);
+                i.putExtras(b);
+
+                ShortcutHelper.updateShortcuts(MainActivity.this, loyaltyCard, i);
+
+                startActivityForResult(i, Utils.MAIN_REQUEST);
+            }
+
+            @Override
+            public void onCardLongClicked(LoyaltyCard loyaltyCard)
+            {
+                contextMenuCard = loyaltyCard;
+            }
+        });
+
+        RecyclerView cardList = findViewById(R.id.list);
+        cardList.setLayoutManager(new LinearLayoutManager(this));
+        cardList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        cardList.setAdapter(adapter);
+        registerForContextMenu(cardList);
 
         TabLayout groupsTabLayout = findViewById(R.id.groups);
         groupsTabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
             public void onTabSelected(TabLayout.Tab tab) {
                 selectedTab = tab.getPosition();
-                updateLoyaltyCardList(filter, tab.getTag());
+
+                // Tabs restored from a load already come with their cards
+                if (!updatingTabs) {
+                    setCombinedGroups(null);
+                    updateLoyaltyCardList(filter, getGroupFilter());
+                }
 
                 // Store active tab in Shared Preference to restore next app launch
                 SharedPreferences activeTabPref = getApplicationContext().getSharedPreferences(
@@ -72,7 +158,11 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
 
             @Override
             public void onTabReselected(TabLayout.Tab tab) {
-
+                // Goes back from picked groups to the tab
+                if (!updatingTabs && combinedGroups != null) {
+                    setCombinedGroups(null);
+                    updateLoyaltyCardList(filter, getGroupFilter());
+                }
             }
         });
 
@@ -92,6 +182,9 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
         helpText.setOnTouchListener(gestureTouchListener);
         noMatchingCardsText.setOnTouchListener(gestureTouchListener);
         list.setOnTouchListener(gestureTouchListener);
+
+        // Make opening starred and shortcut cards instant
+        BarcodeWarmup.scheduleWhenIdle(this);
     }
 
     @Override
@@ -108,28 +201,14 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
         }
 
         // Start of active tab logic
-        TabLayout groupsTabLayout = findViewById(R.id.groups);
-        updateTabGroups(groupsTabLayout);
-
         // Restore active tab from Shared Preference
         SharedPreferences activeTabPref = getApplicationContext().getSharedPreferences(
                 getString(R.string.sharedpreference_active_tab),
                 Context.MODE_PRIVATE);
         selectedTab = activeTabPref.getInt(getString(R.string.sharedpreference_active_tab), 0);
 
-        Object group = null;
-
-        if (groupsTabLayout.getTabCount() != 0) {
-            TabLayout.Tab tab = groupsTabLayout.getTabAt(selectedTab);
-            if (tab == null) {
-                tab = groupsTabLayout.getTabAt(0);
-            }
-
-            groupsTabLayout.selectTab(tab);
-            assert tab != null;
-            group = tab.getTag();
-        }
-        updateLoyaltyCardList(filter, group);
+        // The tabs are selected once the groups are loaded
+        loadCardList(new LoyaltyCardListLoader(this, filter, selectedTab, combinedGroups, this));
         // End of active tab logic
 
         FloatingActionButton addButton = findViewById(R.id.fabAdd);
@@ -186,6 +265,8 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
 
         if (!searchView.isIconified()) {
             searchView.setIconified(true);
+        } else if (combinedGroups != null) {
+            filterByGroups(null);
         } else {
             TabLayout groupsTabLayout = findViewById(R.id.groups);
 
@@ -198,28 +279,241 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
         }
     }
 
-    private void updateLoyaltyCardList(String filterText, Object tag)
+    @Override
+    protected void onSaveInstanceState(Bundle outState)
+    {
+        super.onSaveInstanceState(outState);
+
+        if (combinedGroups != null) {
+            outState.putStringArrayList(STATE_COMBINED_GROUPS, new ArrayList<>(combinedGroups.groupIds));
+            outState.putBoolean(STATE_COMBINED_ANY, combinedGroups.mode == GroupFilter.Mode.ANY);
+        }
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        searchHandler.removeCallbacks(search);
+        cancelPrefetch();
+
+        if (cardListLoader != null) {
+            cardListLoader.cancel(false);
+            cardListLoader = null;
+        }
+
+        super.onDestroy();
+    }
+
+    private void updateLoyaltyCardList(String filterText, GroupFilter groupFilter)
+    {
+        // Keep a pending reload of the tabs, it loads the cards of the selected tab too
+        if (cardListLoader != null && cardListLoader.loadsGroups()) {
+            loadCardList(new LoyaltyCardListLoader(this, filterText, selectedTab, combinedGroups, this));
+            return;
+        }
+
+        // Tabs searched before, or prefetched, are shown right away
+        LoyaltyCardListLoader.Result cached = LoyaltyCardListLoader.loadCached(this, filterText, groupFilter);
+        if (cached != null) {
+            if (cardListLoader != null) {
+                cardListLoader.cancel(false);
+            }
+
+            onCardListLoaded(cached);
+            return;
+        }
+
+        loadCardList(new LoyaltyCardListLoader(this, filterText, groupFilter, this));
+    }
+
+    private void searchLoyaltyCardList(String filterText, GroupFilter groupFilter)
+    {
+        // Typing more of the same search only narrows the shown result, which
+        // is done in memory. This does not hold for near matches of a
+        // misspelled search, and a pending reload of the tabs has to go first.
+        if (lastResult != null
+                && !lastResult.fuzzy
+                && (cardListLoader == null || !cardListLoader.loadsGroups())
+                && Objects.equals(lastResult.groupFilter, groupFilter)
+                && CardFilter.canNarrow(lastResult.filter, filterText)) {
+            loadCardList(new LoyaltyCardListLoader(this, filterText, lastResult, this));
+            return;
+        }
+
+        updateLoyaltyCardList(filterText, groupFilter);
+    }
+
+    /**
+     * Returns the groups whose cards are shown: the picked ones, else the
+     * one of the selected tab, or null for all cards.
+     */
+    private GroupFilter getGroupFilter()
     {
-        Group group = null;
-        if (tag != null) {
-            group = (Group) tag;
+        if (combinedGroups != null) {
+            return combinedGroups;
+        }
+
+        TabLayout groupsTabLayout = findViewById(R.id.groups);
+        return getGroupFilter(groupsTabLayout.getTabAt(groupsTabLayout.getSelectedTabPosition()));
+    }
+
+    private static GroupFilter getGroupFilter(TabLayout.Tab tab)
+    {
+        if (tab == null || tab.getTag() == null) {
+            return null;
+        }
+
+        return GroupFilter.of(((Group) tab.getTag())._id);
+    }
+
+    /**
+     * Shows the cards in the given groups instead of those of the selected
+     * tab, or goes back to the tab if groups is null.
+     */
+    void filterByGroups(GroupFilter groups)
+    {
+        setCombinedGroups(groups);
+        updateLoyaltyCardList(filter, getGroupFilter());
+    }
+
+    private void setCombinedGroups(GroupFilter groups)
+    {
+        combinedGroups = groups;
+
+        if (getSupportActionBar() == null) {
+            return;
         }
 
-        final ListView cardList = findViewById(R.id.list);
+        if (groups == null) {
+            getSupportActionBar().setSubtitle(null);
+            return;
+        }
+
+        int format = groups.mode == GroupFilter.Mode.ALL ? R.string.inAllGroups : R.string.inAnyGroup;
+        getSupportActionBar().setSubtitle(getString(format, TextUtils.join(", ", groups.groupIds)));
+    }
+
+    private void showGroupFilterDialog()
+    {
+        TabLayout groupsTabLayout = findViewById(R.id.groups);
+        GroupFilter current = getGroupFilter();
+
+        // The first tab shows all cards
+        final List<String> groupIds = new ArrayList<>();
+        for (int i = 1; i < groupsTabLayout.getTabCount(); i++) {
+            groupIds.add(((Group) groupsTabLayout.getTabAt(i).getTag())._id);
+        }
+
+        final boolean[] checked = new boolean[groupIds.size()];
+        for (int i = 0; i < checked.length; i++) {
+            checked[i] = current != null && current.groupIds.contains(groupIds.get(i));
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.filterByGroups);
+        builder.setMultiChoiceItems(groupIds.toArray(new String[0]), checked, new DialogInterface.OnMultiChoiceClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+                checked[which] = isChecked;
+            }
+        });
+        builder.setPositiveButton(R.string.matchAllGroups, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                List<String> picked = getPicked(groupIds, checked);
+                filterByGroups(picked.isEmpty() ? null : GroupFilter.all(picked));
+            }
+        });
+        builder.setNeutralButton(R.string.matchAnyGroup, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                List<String> picked = getPicked(groupIds, checked);
+                filterByGroups(picked.isEmpty() ? null : GroupFilter.any(picked));
+            }
+        });
+        builder.setNegativeButton(R.string.cancel, null);
+        builder.show();
+    }
+
+    private static List<String> getPicked(List<String> groupIds, boolean[] checked)
+    {
+        List<String> picked = new ArrayList<>();
+        for (int i = 0; i < checked.length; i++) {
+            if (checked[i]) {
+                picked.add(groupIds.get(i));
+            }
+        }
+
+        return picked;
+    }
+
+    private void loadCardList(LoyaltyCardListLoader loader)
+    {
+        // Results for an older filter or tab are no longer wanted
+        if (cardListLoader != null) {
+            cardListLoader.cancel(false);
+        }
+
+        // Nor should prefetching the old neighbours delay this load
+        cancelPrefetch();
+
+        if (loader.isFullSearch()) {
+            cardListQueries++;
+        }
+
+        cardListLoader = loader;
+        cardListLoader.start();
+    }
+
+    int getCardListQueries()
+    {
+        return cardListQueries;
+    }
+
+    boolean isLoadingCardList()
+    {
+        return cardListLoader != null;
+    }
+
+    @Override
+    public void onCardListLoaded(LoyaltyCardListLoader.Result result)
+    {
+        cardListLoader = null;
+        lastResult = result;
+
+        if (result.groups != null) {
+            TabLayout groupsTabLayout = findViewById(R.id.groups);
+
+            updatingTabs = true;
+            updateTabGroups(groupsTabLayout, result.groups);
+
+            if (groupsTabLayout.getTabCount() != 0) {
+                groupsTabLayout.selectTab(groupsTabLayout.getTabAt(result.selectedTab));
+            }
+            updatingTabs = false;
+
+            // Picked groups may have been renamed or deleted meanwhile
+            if (combinedGroups != null) {
+                setCombinedGroups(result.combined ? result.groupFilter : null);
+            }
+
+            if (menu != null) {
+                menu.findItem(R.id.action_filter_groups).setVisible(!result.groups.isEmpty());
+            }
+        }
+
+        final RecyclerView cardList = findViewById(R.id.list);
         final TextView helpText = findViewById(R.id.helpText);
         final TextView noMatchingCardsText = findViewById(R.id.noMatchingCardsText);
-        final DBHelper db = new DBHelper(this);
-
-        Cursor cardCursor = db.getLoyaltyCardCursor(filterText, group);
 
-        if(db.getLoyaltyCardCount() > 0)
+        if(result.totalCount > 0)
         {
             // We want the cardList to be visible regardless of the filtered match count
             // to ensure that the noMatchingCardsText doesn't end up being shown below
             // the keyboard
             cardList.setVisibility(View.VISIBLE);
             helpText.setVisibility(View.GONE);
-            if(cardCursor.getCount() > 0)
+            if(result.cards.size() > 0)
             {
                 noMatchingCardsText.setVisibility(View.GONE);
             }
@@ -235,38 +529,52 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
             noMatchingCardsText.setVisibility(View.GONE);
         }
 
-        final LoyaltyCardCursorAdapter adapter = new LoyaltyCardCursorAdapter(this, cardCursor);
-        cardList.setAdapter(adapter);
+        // Only rows of cards that changed since the last update get rebound
+        adapter.submitList(result.cards);
 
-        registerForContextMenu(cardList);
+        cancelPrefetch();
+        Looper.myQueue().addIdleHandler(prefetchNeighbourTabs);
+    }
 
-        cardList.setOnItemClickListener(new AdapterView.OnItemClickListener()
-        {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id)
-            {
-                Cursor selected = (Cursor) parent.getItemAtPosition(position);
-                LoyaltyCard loyaltyCard = LoyaltyCard.toLoyaltyCard(selected);
+    private void prefetchNeighbourTabs()
+    {
+        // Searches with wildcards are not cached
+        if (lastResult == null || CardFilter.hasWildcards(lastResult.filter)) {
+            return;
+        }
 
-                Intent i = new Intent(view.getContext(), LoyaltyCardViewActivity.class);
-                i.setAction("");
-                final Bundle b = new Bundle();
-                b.putInt("id", loyaltyCard.id);
-                i.putExtras(b);
+        TabLayout groupsTabLayout = findViewById(R.id.groups);
+        int position = groupsTabLayout.getSelectedTabPosition();
+
+        // With picked groups shown, the selected tab is likely next too
+        List<GroupFilter> groups = new ArrayList<>();
+        for (int neighbour = position - 1; neighbour <= position + 1; neighbour++) {
+            TabLayout.Tab tab = groupsTabLayout.getTabAt(neighbour);
+            if (tab != null && (neighbour != position || combinedGroups != null)) {
+                groups.add(getGroupFilter(tab));
+            }
+        }
 
-                ShortcutHelper.updateShortcuts(MainActivity.this, loyaltyCard, i);
+        if (groups.isEmpty()) {
+            return;
+        }
 
-                startActivityForResult(i, Utils.MAIN_REQUEST);
-            }
-        });
+        prefetch = new LoyaltyCardListLoader.Prefetch(this, lastResult.filter, groups);
+        prefetch.start();
     }
 
-    public void updateTabGroups(TabLayout groupsTabLayout)
+    private void cancelPrefetch()
     {
-        final DBHelper db = new DBHelper(this);
+        Looper.myQueue().removeIdleHandler(prefetchNeighbourTabs);
 
-        List<Group> newGroups = db.getGroups();
+        if (prefetch != null) {
+            prefetch.cancel(false);
+            prefetch = null;
+        }
+    }
 
+    public void updateTabGroups(TabLayout groupsTabLayout, List<Group> newGroups)
+    {
         if (newGroups.size() == 0) {
             groupsTabLayout.removeAllTabs();
             groupsTabLayout.setVisibility(View.GONE);
@@ -304,11 +612,11 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
     @Override
     public boolean onContextItemSelected(MenuItem item)
     {
-        AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) item.getMenuInfo();
-        ListView listView = findViewById(R.id.list);
-
-        Cursor cardCursor = (Cursor)listView.getItemAtPosition(info.position);
-        LoyaltyCard card = LoyaltyCard.toLoyaltyCard(cardCursor);
+        LoyaltyCard card = contextMenuCard;
+        if(card == null)
+        {
+            return super.onContextItemSelected(item);
+        }
 
         if(item.getItemId() == R.id.action_clipboard)
         {
@@ -336,6 +644,9 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
 
         getMenuInflater().inflate(R.menu.main_menu, menu);
 
+        TabLayout groupsTabLayout = findViewById(R.id.groups);
+        menu.findItem(R.id.action_filter_groups).setVisible(groupsTabLayout.getTabCount() != 0);
+
         SearchManager searchManager = (SearchManager) getSystemService(Context.SEARCH_SERVICE);
         if (searchManager != null) {
             SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
@@ -360,13 +671,8 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
                 public boolean onQueryTextChange(String newText) {
                     filter = newText;
 
-                    TabLayout groupsTabLayout = findViewById(R.id.groups);
-                    TabLayout.Tab currentTab = groupsTabLayout.getTabAt(groupsTabLayout.getSelectedTabPosition());
-
-                    updateLoyaltyCardList(
-                        newText,
-                        currentTab != null ? currentTab.getTag() : null
-                    );
+                    searchHandler.removeCallbacks(search);
+                    searchHandler.postDelayed(search, SEARCH_DELAY_MS);
 
                     return true;
                 }
@@ -388,6 +694,12 @@ public class MainActivity extends AppCompatActivity implements GestureDetector.O
             return true;
         }
 
+        if(id == R.id.action_filter_groups)
+        {
+            showGroupFilterDialog();
+            return true;
+        }
+
         if(id == R.id.action_import_export)
         {
             Intent i = new Intent(getApplicationContext(), ImportExportActivity.class);
@@ -0,0 +1,125 @@
+package protect.card_locker;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader which memory-maps a file and decodes it as UTF-8 in large
+ * chunks, avoiding the intermediate byte buffers of the usual
+ * InputStream, InputStreamReader and BufferedReader stack.
+ *
+ * Malformed input is replaced the same way InputStreamReader does it,
+ * so both paths produce the same characters.
+ */
+class MappedFileReader extends Reader
+{
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final FileInputStream stream;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private final CharsetDecoder decoder;
+    private boolean flushed = false;
+
+    /**
+     * Maps the stream's file from its current position to its end.
+     * @throws IOException if the stream is not backed by a mappable file
+     */
+    MappedFileReader(FileInputStream stream) throws IOException
+    {
+        this(stream, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize number of characters decoded at a time, at least 2
+     *                  so a surrogate pair always fits
+     */
+    MappedFileReader(FileInputStream stream, int chunkSize) throws IOException
+    {
+        if(chunkSize < 2)
+        {
+            throw new IllegalArgumentException("Chunk size too small: " + chunkSize);
+        }
+
+        FileChannel channel = stream.getChannel();
+        long position = channel.position();
+        long length = channel.size() - position;
+
+        if(length > Integer.MAX_VALUE)
+        {
+            throw new IOException("File too large to map: " + length);
+        }
+
+        this.stream = stream;
+        this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        this.chars = CharBuffer.allocate(chunkSize);
+        this.chars.flip();
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Decodes the next chunk of the file into the character buffer.
+     */
+    private void fill()
+    {
+        chars.clear();
+
+        if(bytes.hasRemaining())
+        {
+            // The whole file is available, so every call is the end of input
+            decoder.decode(bytes, chars, true);
+        }
+
+        if(!bytes.hasRemaining() && !flushed && chars.hasRemaining())
+        {
+            decoder.flush(chars);
+            flushed = true;
+        }
+
+        chars.flip();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException
+    {
+        if(len == 0)
+        {
+            return 0;
+        }
+
+        if(!chars.hasRemaining())
+        {
+            fill();
+
+            if(!chars.hasRemaining())
+            {
+                return -1;
+            }
+        }
+
+        int count = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, count);
+        return count;
+    }
+
+    @Override
+    public boolean ready()
+    {
+        return chars.hasRemaining() || bytes.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        stream.close();
+    }
+}
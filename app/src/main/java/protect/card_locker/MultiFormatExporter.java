@@ -3,7 +3,7 @@ package protect.card_locker;
 import android.util.Log;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 public class MultiFormatExporter
 {
@@ -19,16 +19,9 @@ public class MultiFormatExporter
      * false otherwise. If false, partial data may have been
      * written to the output stream, and it should be discarded.
      */
-    public static boolean exportData(DBHelper db, OutputStreamWriter output, DataFormat format)
+    public static boolean exportData(DBHelper db, Writer output, DataFormat format)
     {
-        DatabaseExporter exporter = null;
-
-        switch(format)
-        {
-            case CSV:
-                exporter = new CsvDatabaseExporter();
-                break;
-        }
+        DatabaseExporter exporter = DataFormatRegistry.getExporter(format);
 
         if(exporter != null)
         {
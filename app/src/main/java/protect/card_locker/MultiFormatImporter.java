@@ -2,8 +2,9 @@ package protect.card_locker;
 
 import android.util.Log;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 
 public class MultiFormatImporter
 {
@@ -20,16 +21,9 @@ public class MultiFormatImporter
      * false otherwise. If false, no data was written to
      * the database.
      */
-    public static boolean importData(DBHelper db, InputStreamReader input, DataFormat format)
+    public static boolean importData(DBHelper db, Reader input, DataFormat format)
     {
-        DatabaseImporter importer = null;
-
-        switch(format)
-        {
-            case CSV:
-                importer = new CsvDatabaseImporter();
-                break;
-        }
+        DatabaseImporter importer = DataFormatRegistry.getImporter(format);
 
         if (importer != null)
         {
@@ -50,4 +44,67 @@ public class MultiFormatImporter
         }
         return false;
     }
+
+    /**
+     * Attempts to import data from the input stream into the
+     * database, detecting the format from the start of the stream.
+     *
+     * Only the first DataFormatRegistry.DETECTION_PREFIX_LENGTH
+     * characters are looked at, the rest of the stream is left
+     * to the importer.
+     *
+     * @return true if the database was successfully imported,
+     * false otherwise. If false, no data was written to
+     * the database.
+     */
+    public static boolean importData(DBHelper db, Reader input)
+    {
+        BufferedReader bufferedReader = new BufferedReader(input);
+        String prefix;
+
+        try
+        {
+            prefix = peek(bufferedReader, DataFormatRegistry.DETECTION_PREFIX_LENGTH);
+        }
+        catch(IOException e)
+        {
+            Log.e(TAG, "Failed to read data to import", e);
+            return false;
+        }
+
+        DataFormat format = DataFormatRegistry.detectFormat(prefix);
+        if(format == null)
+        {
+            Log.e(TAG, "Unable to detect format of imported data");
+            return false;
+        }
+
+        Log.i(TAG, "Detected import format: " + format.name());
+        return importData(db, bufferedReader, format);
+    }
+
+    /**
+     * Reads up to length characters without consuming them.
+     */
+    private static String peek(BufferedReader reader, int length) throws IOException
+    {
+        char[] buffer = new char[length];
+        int read = 0;
+
+        reader.mark(length);
+
+        while(read < length)
+        {
+            int count = reader.read(buffer, read, length - read);
+            if(count == -1)
+            {
+                break;
+            }
+            read += count;
+        }
+
+        reader.reset();
+
+        return new String(buffer, 0, read);
+    }
 }
@@ -150,4 +150,43 @@ class ShortcutHelper
             shortcutManager.setDynamicShortcuts(list);
         }
     }
+
+    /**
+     * Returns the card ids of the current app shortcuts, most recently
+     * used first.
+     */
+    @TargetApi(25)
+    static List<Integer> getShortcutCardIds(Context context)
+    {
+        List<Integer> ids = new LinkedList<>();
+
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N_MR1)
+        {
+            ShortcutManager shortcutManager = context.getSystemService(ShortcutManager.class);
+            List<ShortcutInfo> list = new LinkedList<>(shortcutManager.getDynamicShortcuts());
+
+            Collections.sort(list, new Comparator<ShortcutInfo>()
+            {
+                @Override
+                public int compare(ShortcutInfo o1, ShortcutInfo o2)
+                {
+                    return o1.getRank() - o2.getRank();
+                }
+            });
+
+            for(ShortcutInfo shortcut : list)
+            {
+                try
+                {
+                    ids.add(Integer.parseInt(shortcut.getId()));
+                }
+                catch(NumberFormatException e)
+                {
+                    // Not a card shortcut
+                }
+            }
+        }
+
+        return ids;
+    }
 }
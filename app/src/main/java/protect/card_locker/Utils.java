@@ -1,15 +1,9 @@
 package protect.card_locker;
 
 import android.app.Activity;
-import android.content.Context;
 import android.content.Intent;
-import android.graphics.Color;
 import android.util.Log;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
-
 import androidx.core.graphics.ColorUtils;
 
 public class Utils {
@@ -22,22 +16,6 @@ public class Utils {
 
     static final double LUMINANCE_MIDPOINT = 0.5;
 
-    static public LetterBitmap generateIcon(Context context, String store, Integer backgroundColor) {
-        if (store.length() == 0) {
-            return null;
-        }
-
-        int tileLetterFontSize = context.getResources().getDimensionPixelSize(R.dimen.tileLetterFontSize);
-        int pixelSize = context.getResources().getDimensionPixelSize(R.dimen.cardThumbnailSize);
-
-        if (backgroundColor == null) {
-            backgroundColor = LetterBitmap.getDefaultColor(context, store);
-        }
-
-        return new LetterBitmap(context, store, store,
-                tileLetterFontSize, pixelSize, pixelSize, backgroundColor, needsDarkForeground(backgroundColor) ? Color.BLACK : Color.WHITE);
-    }
-
     static public boolean needsDarkForeground(Integer backgroundColor) {
         return ColorUtils.calculateLuminance(backgroundColor) > LUMINANCE_MIDPOINT;
     }
@@ -65,16 +43,4 @@ public class Utils {
 
         return new BarcodeValues(format, contents);
     }
-
-    static public Boolean hasExpired(Date expiryDate) {
-        // today
-        Calendar date = new GregorianCalendar();
-        // reset hour, minutes, seconds and millis
-        date.set(Calendar.HOUR_OF_DAY, 0);
-        date.set(Calendar.MINUTE, 0);
-        date.set(Calendar.SECOND, 0);
-        date.set(Calendar.MILLISECOND, 0);
-
-        return expiryDate.before(date.getTime());
-    }
 }
@@ -11,6 +11,55 @@ import protect.card_locker.R;
 
 public class Settings
 {
+    /**
+     * Values of all settings at one point in time, for code reading them
+     * often, such as list adapters binding rows. Reading a field does not
+     * look up resources or SharedPreferences.
+     */
+    public static final class Snapshot
+    {
+        public final int theme;
+        public final int cardTitleListFontSize;
+        public final int cardNoteListFontSize;
+        public final int cardTitleFontSize;
+        public final int cardIdFontSize;
+        public final boolean useMaxBrightnessDisplayingBarcode;
+        public final boolean lockBarcodeScreenOrientation;
+
+        private Snapshot(Settings settings)
+        {
+            theme = settings.getTheme();
+            cardTitleListFontSize = settings.getCardTitleListFontSize();
+            cardNoteListFontSize = settings.getCardNoteListFontSize();
+            cardTitleFontSize = settings.getCardTitleFontSize();
+            cardIdFontSize = settings.getCardIdFontSize();
+            useMaxBrightnessDisplayingBarcode = settings.useMaxBrightnessDisplayingBarcode();
+            lockBarcodeScreenOrientation = settings.getLockBarcodeScreenOrientation();
+        }
+    }
+
+    // Shared by all activities of the application the snapshot was taken in
+    private static volatile Context snapshotContext;
+    private static volatile Snapshot snapshot;
+
+    // SharedPreferences only keeps a weak reference to its listeners
+    private static SharedPreferences snapshotPreferences;
+    private static final SharedPreferences.OnSharedPreferenceChangeListener snapshotUpdater =
+            new SharedPreferences.OnSharedPreferenceChangeListener()
+    {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)
+        {
+            synchronized(Settings.class)
+            {
+                if(sharedPreferences == snapshotPreferences)
+                {
+                    snapshot = new Snapshot(new Settings(snapshotContext));
+                }
+            }
+        }
+    };
+
     private Context context;
     private SharedPreferences settings;
 
@@ -20,6 +69,39 @@ public class Settings
         this.settings = PreferenceManager.getDefaultSharedPreferences(context);
     }
 
+    /**
+     * Returns the current snapshot of the settings, which is replaced
+     * whenever a setting changes.
+     */
+    public static Snapshot getSnapshot(Context context)
+    {
+        Context application = context.getApplicationContext();
+
+        Snapshot current = snapshot;
+        if(current != null && snapshotContext == application)
+        {
+            return current;
+        }
+
+        synchronized(Settings.class)
+        {
+            if(snapshot == null || snapshotContext != application)
+            {
+                if(snapshotPreferences != null)
+                {
+                    snapshotPreferences.unregisterOnSharedPreferenceChangeListener(snapshotUpdater);
+                }
+
+                snapshotContext = application;
+                snapshotPreferences = PreferenceManager.getDefaultSharedPreferences(application);
+                snapshotPreferences.registerOnSharedPreferenceChangeListener(snapshotUpdater);
+                snapshot = new Snapshot(new Settings(application));
+            }
+
+            return snapshot;
+        }
+    }
+
     private String getResString(@StringRes int resId)
     {
         return context.getString(resId);
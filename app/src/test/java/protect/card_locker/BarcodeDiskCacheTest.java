@@ -0,0 +1,94 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class BarcodeDiskCacheTest
+{
+    private Context context;
+    private File root;
+
+    @Before
+    public void setUp()
+    {
+        context = ApplicationProvider.getApplicationContext();
+        root = new File(context.getCacheDir(), "test-barcodes");
+        root.mkdirs();
+    }
+
+    private static Bitmap bitmap()
+    {
+        return Bitmap.createBitmap(100, 50, Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void keyDependsOnCardIdAndFormat()
+    {
+        BarcodeDiskCache cache = new BarcodeDiskCache(context, root, BarcodeDiskCache.DEFAULT_MAX_BYTES);
+        cache.put(1, "12345", BarcodeFormat.CODE_128, 100, 50, bitmap());
+
+        assertTrue(cache.contains(1, "12345", BarcodeFormat.CODE_128, 100, 50));
+        assertFalse(cache.contains(1, "12346", BarcodeFormat.CODE_128, 100, 50));
+        assertFalse(cache.contains(1, "12345", BarcodeFormat.CODE_39, 100, 50));
+        assertFalse(cache.contains(1, "12345", BarcodeFormat.CODE_128, 100, 60));
+    }
+
+    @Test
+    public void invalidateRemovesOnlyThatCard()
+    {
+        BarcodeDiskCache cache = new BarcodeDiskCache(context, root, BarcodeDiskCache.DEFAULT_MAX_BYTES);
+        cache.put(1, "12345", BarcodeFormat.CODE_128, 100, 50, bitmap());
+        cache.put(1, "12345", BarcodeFormat.CODE_128, 50, 100, bitmap());
+        cache.put(11, "12345", BarcodeFormat.CODE_128, 100, 50, bitmap());
+
+        cache.invalidate(1);
+
+        assertFalse(cache.contains(1, "12345", BarcodeFormat.CODE_128, 100, 50));
+        assertFalse(cache.contains(1, "12345", BarcodeFormat.CODE_128, 50, 100));
+        assertTrue(cache.contains(11, "12345", BarcodeFormat.CODE_128, 100, 50));
+    }
+
+    @Test
+    public void evictsByTotalSize()
+    {
+        BarcodeDiskCache cache = new BarcodeDiskCache(context, root, BarcodeDiskCache.DEFAULT_MAX_BYTES);
+        for(int index = 0; index < 5; index++)
+        {
+            cache.put(index, "card" + index, BarcodeFormat.QR_CODE, 100, 50, bitmap());
+        }
+
+        long size = cache.getSize();
+        assertTrue(size > 0);
+
+        cache.trimToSize(size / 2);
+        assertTrue(cache.getSize() <= size / 2);
+    }
+
+    @Test
+    public void removesOldVersions()
+    {
+        File old = new File(root, BarcodeDiskCache.DIRECTORY_PREFIX + (BarcodeDiskCache.VERSION - 1));
+        old.mkdirs();
+
+        new BarcodeDiskCache(context, root, BarcodeDiskCache.DEFAULT_MAX_BYTES).removeOldVersions();
+
+        assertFalse(old.exists());
+    }
+}
@@ -0,0 +1,193 @@
+package protect.card_locker;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class BarcodeDrawableTest
+{
+    /**
+     * Keeps the rectangles drawn, as Robolectric does not rasterize.
+     */
+    private static class RecordingCanvas extends Canvas
+    {
+        final List<Rect> bars = new ArrayList<>();
+        Rect background;
+
+        @Override
+        public void drawRect(Rect rect, Paint paint)
+        {
+            if(paint.getColor() == BarcodeGenerator.BLACK)
+            {
+                bars.add(new Rect(rect));
+            }
+            else
+            {
+                background = new Rect(rect);
+            }
+        }
+    }
+
+    private static BitMatrix matrix(String... rows)
+    {
+        BitMatrix matrix = new BitMatrix(rows[0].length(), rows.length);
+        for(int y = 0; y < rows.length; y++)
+        {
+            for(int x = 0; x < rows[y].length(); x++)
+            {
+                if(rows[y].charAt(x) == '1')
+                {
+                    matrix.set(x, y);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static RecordingCanvas draw(BarcodeDrawable drawable, int left, int top, int right, int bottom)
+    {
+        drawable.setBounds(left, top, right, bottom);
+        RecordingCanvas canvas = new RecordingCanvas();
+        drawable.draw(canvas);
+        return canvas;
+    }
+
+    /**
+     * Checks that every black run of the row is drawn as a bar of at least
+     * a pixel, with at least a pixel of space around it where the row has
+     * a space, all within the background.
+     */
+    private static void assertNoRunLost(String row, RecordingCanvas canvas)
+    {
+        int blackRuns = 0;
+        for(int x = 0; x < row.length(); x++)
+        {
+            if(row.charAt(x) == '1' && (x == 0 || row.charAt(x - 1) == '0'))
+            {
+                blackRuns++;
+            }
+        }
+        assertEquals(row, blackRuns, canvas.bars.size());
+
+        int edge = canvas.background.left;
+        for(int index = 0; index < canvas.bars.size(); index++)
+        {
+            Rect bar = canvas.bars.get(index);
+            assertTrue(row, bar.width() >= 1);
+
+            boolean spaceBefore = index > 0 || row.charAt(0) == '0';
+            assertTrue(row, spaceBefore ? bar.left > edge : bar.left == edge);
+            edge = bar.right;
+        }
+
+        boolean spaceAfter = row.charAt(row.length() - 1) == '0';
+        assertTrue(row, spaceAfter ? edge < canvas.background.right : edge == canvas.background.right);
+    }
+
+    @Test
+    public void barsAtFractionalScale()
+    {
+        // 8 modules into 6 pixels, 0.75 pixels per module
+        BarcodeDrawable drawable = new BarcodeDrawable(matrix("11001011"), true);
+        RecordingCanvas canvas = draw(drawable, 10, 20, 16, 60);
+
+        assertEquals(new Rect(10, 20, 16, 60), canvas.background);
+        assertEquals(3, canvas.bars.size());
+        assertEquals(new Rect(10, 20, 12, 60), canvas.bars.get(0));
+        assertEquals(new Rect(13, 20, 14, 60), canvas.bars.get(1));
+        assertEquals(new Rect(15, 20, 16, 60), canvas.bars.get(2));
+    }
+
+    @Test
+    public void thinRunsKeepAPixelAtFractionalScale()
+    {
+        // Single module bars and spaces at odd and even positions, at most
+        // 11 runs per row so they fit from 11 pixels on
+        String[] rows = {
+                "1010110100101",
+                "0101001011010",
+                "1101001101011",
+                "0010110010100"
+        };
+
+        for(String row : rows)
+        {
+            BarcodeDrawable drawable = new BarcodeDrawable(matrix(row), true);
+            for(int width = 11; width < row.length(); width++)
+            {
+                RecordingCanvas canvas = draw(drawable, 0, 0, width, 20);
+                assertEquals(new Rect(0, 0, width, 20), canvas.background);
+                assertNoRunLost(row, canvas);
+            }
+        }
+    }
+
+    @Test
+    public void moreRunsThanPixels()
+    {
+        // 8 runs do not fit into 5 pixels, so modules stay a pixel wide
+        BarcodeDrawable drawable = new BarcodeDrawable(matrix("10101010"), true);
+        RecordingCanvas canvas = draw(drawable, 0, 0, 5, 20);
+
+        assertEquals(new Rect(-1, 0, 7, 20), canvas.background);
+        assertNoRunLost("10101010", canvas);
+    }
+
+    @Test
+    public void rowsAtFractionalScale()
+    {
+        BarcodeDrawable drawable = new BarcodeDrawable(matrix(
+                "11111111",
+                "11110000",
+                "11111111",
+                "00010000",
+                "11111111",
+                "11110000",
+                "11111111",
+                "11110000"), false);
+
+        // 1.5 and 0.75 pixels per module both end up at one pixel per module
+        Rect[] bounds = { new Rect(0, 0, 12, 12), new Rect(0, 0, 6, 10) };
+        Rect[] backgrounds = { new Rect(2, 2, 10, 10), new Rect(-1, 1, 7, 9) };
+
+        for(int index = 0; index < bounds.length; index++)
+        {
+            Rect drawn = bounds[index];
+            RecordingCanvas canvas = draw(drawable, drawn.left, drawn.top, drawn.right, drawn.bottom);
+            Rect background = backgrounds[index];
+
+            assertEquals(background, canvas.background);
+            assertEquals(8, canvas.bars.size());
+
+            // Every row is at least a pixel high and starts where the one
+            // above it ended
+            int edge = background.top;
+            for(int y = 0; y < 8; y++)
+            {
+                Rect bar = canvas.bars.get(y);
+                assertTrue(bar.height() >= 1);
+                assertEquals(edge, bar.top);
+                edge = bar.bottom;
+            }
+            assertEquals(background.bottom, edge);
+
+            assertEquals(new Rect(background.left + 3, background.top + 3,
+                    background.left + 4, background.top + 4), canvas.bars.get(3));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package protect.card_locker;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class BarcodeImageCacheTest
+{
+    @Test
+    public void hitsOnlyForSameKey()
+    {
+        BarcodeImageCache cache = new BarcodeImageCache(1024 * 1024);
+        Bitmap bitmap = Bitmap.createBitmap(100, 50, Bitmap.Config.ARGB_8888);
+
+        cache.put("12345", BarcodeFormat.CODE_128, 100, 50, bitmap);
+
+        assertSame(bitmap, cache.get("12345", BarcodeFormat.CODE_128, 100, 50));
+        assertNull(cache.get("12345", BarcodeFormat.CODE_39, 100, 50));
+        assertNull(cache.get("12345", BarcodeFormat.CODE_128, 200, 50));
+        assertNull(cache.get("54321", BarcodeFormat.CODE_128, 100, 50));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsWhenFullAndOnTrim()
+    {
+        // Room for two 100x50 ARGB_8888 bitmaps
+        BarcodeImageCache cache = new BarcodeImageCache(2 * 100 * 50 * 4);
+
+        for(int index = 0; index < 3; index++)
+        {
+            cache.put("card" + index, BarcodeFormat.QR_CODE, 100, 50,
+                    Bitmap.createBitmap(100, 50, Bitmap.Config.ARGB_8888));
+        }
+
+        assertEquals(2 * 100 * 50 * 4, cache.size());
+        assertNull(cache.get("card0", BarcodeFormat.QR_CODE, 100, 50));
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(100 * 50 * 4, cache.size());
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, cache.size());
+    }
+}
@@ -14,6 +14,8 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 
+import java.time.Duration;
+
 import static org.junit.Assert.assertEquals;
 import static org.robolectric.Shadows.shadowOf;
 
@@ -97,4 +99,32 @@ public class BarcodeSelectorActivityTest {
         assertEquals(View.VISIBLE, noBarcodeButton.getVisibility());
         assertEquals(false, noBarcodeButton.isEnabled());
     }
+
+    @Test
+    public void previewsDebouncedWhileTyping()
+    {
+        ActivityController activityController = Robolectric.buildActivity(BarcodeSelectorActivity.class).create();
+        activityController.start();
+        activityController.resume();
+
+        BarcodeSelectorActivity activity = (BarcodeSelectorActivity) activityController.get();
+        final TextView cardId = activity.findViewById(R.id.cardId);
+        BarcodeRenderExecutor executor = BarcodeRenderExecutor.getInstance();
+        int scheduledBefore = executor.getScheduledCount();
+
+        for(String text : new String[]{"1", "12", "123", "1234", "12345"})
+        {
+            cardId.setText(text);
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(BarcodeSelectorActivity.PREVIEW_DELAY_MS / 2));
+        }
+
+        // Every keystroke asked for all previews, none were rendered yet
+        assertEquals(5 * BarcodeSelectorActivity.SUPPORTED_BARCODE_TYPES.size(), activity.getPreviewsRequested());
+        assertEquals(scheduledBefore, executor.getScheduledCount());
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(BarcodeSelectorActivity.PREVIEW_DELAY_MS));
+
+        // Only the last text is rendered, once per format
+        assertEquals(scheduledBefore + BarcodeSelectorActivity.SUPPORTED_BARCODE_TYPES.size(), executor.getScheduledCount());
+    }
 }
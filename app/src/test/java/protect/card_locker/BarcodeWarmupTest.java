@@ -0,0 +1,49 @@
+package protect.card_locker;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class BarcodeWarmupTest
+{
+    @Test
+    public void warmsUpStarredCardsOnly()
+    {
+        Context context = ApplicationProvider.getApplicationContext();
+        BarcodeImageCache.getInstance().clear();
+        DBHelper db = new DBHelper(context);
+        db.insertLoyaltyCard("starred", "", null, "428311627547", BarcodeFormat.UPC_A.name(), null, 1);
+        db.insertLoyaltyCard("other", "", null, "4763705295336", BarcodeFormat.EAN_13.name(), null, 0);
+        db.insertLoyaltyCard("no barcode", "", null, "12345", "", null, 1);
+        // Imports do not check the type, this must be skipped, not crash
+        db.insertLoyaltyCard("unknown barcode", "", null, "12345", "NOT_A_FORMAT", null, 1);
+
+        // Nothing is known about the barcode size yet
+        assertEquals(0, BarcodeWarmup.warmUp(context));
+
+        BarcodeDiskCache.getInstance(context).setViewSize(600, 200);
+        assertEquals(1, BarcodeWarmup.warmUp(context));
+
+        int[] upcSize = BarcodeGenerator.getTargetSize(BarcodeFormat.UPC_A, 600, 200);
+        int[] eanSize = BarcodeGenerator.getTargetSize(BarcodeFormat.EAN_13, 600, 200);
+        BarcodeImageCache cache = BarcodeImageCache.getInstance();
+        assertNotNull(cache.get("428311627547", BarcodeFormat.UPC_A, upcSize[0], upcSize[1]));
+        assertNull(cache.get("4763705295336", BarcodeFormat.EAN_13, eanSize[0], eanSize[1]));
+
+        // Already cached, nothing to render again
+        assertEquals(0, BarcodeWarmup.warmUp(context));
+    }
+}
@@ -0,0 +1,354 @@
+package protect.card_locker;
+
+import android.app.Activity;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.JsonWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times the DBHelper operations the app relies on against a synthetic
+ * wallet, see WalletGenerator.
+ *
+ * The defaults are small so this also runs as part of the normal test
+ * suite. For real measurements pass larger sizes through Gradle, e.g.
+ *
+ *   ./gradlew testDebugUnitTest --tests '*DatabaseBenchmark' \
+ *       -Pbenchmark.cards=5000 -Pbenchmark.groups=20 -Pbenchmark.label=$(git rev-parse --short HEAD)
+ *
+ * Results are written as JSON to build/reports/benchmarks/, one file per
+ * label, so runs on different commits can be diffed or fed to a script.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class DatabaseBenchmark
+{
+    private static final int CARDS = Integer.getInteger("benchmark.cards", 200);
+    private static final int GROUPS = Integer.getInteger("benchmark.groups", 5);
+    private static final double DENSITY = Double.parseDouble(System.getProperty("benchmark.density", "0.2"));
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 1);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 3);
+    private static final String LABEL = System.getProperty("benchmark.label", "local");
+    private static final String OUTPUT_DIR = System.getProperty("benchmark.output", "build/reports/benchmarks");
+
+    private static final List<Result> results = new ArrayList<>();
+
+    private DBHelper db;
+
+    private static class Result
+    {
+        final String name;
+        final long[] samples;
+
+        Result(String name, long[] samples)
+        {
+            this.name = name;
+            this.samples = samples;
+        }
+    }
+
+    private interface Operation
+    {
+        void run() throws Exception;
+    }
+
+    @Before
+    public void setUp()
+    {
+        Activity activity = Robolectric.setupActivity(MainActivity.class);
+        db = new DBHelper(activity);
+
+        new WalletGenerator()
+                .setCardCount(CARDS)
+                .setGroupCount(GROUPS)
+                .setMembershipDensity(DENSITY)
+                .generate(db);
+
+        assertEquals(CARDS, db.getLoyaltyCardCount());
+    }
+
+    /**
+     * Runs the operation WARMUP times unmeasured, then ITERATIONS times
+     * measured, and records the wall clock time of each measured run.
+     */
+    private void measure(String name, Operation operation) throws Exception
+    {
+        for(int index = 0; index < WARMUP; index++)
+        {
+            operation.run();
+        }
+
+        long[] samples = new long[ITERATIONS];
+        for(int index = 0; index < ITERATIONS; index++)
+        {
+            long start = System.nanoTime();
+            operation.run();
+            samples[index] = System.nanoTime() - start;
+        }
+
+        synchronized(results)
+        {
+            results.add(new Result(name, samples));
+            writeResults();
+        }
+    }
+
+    private static int readAll(Cursor cursor)
+    {
+        int count = 0;
+
+        while(cursor.moveToNext())
+        {
+            LoyaltyCard.toLoyaltyCard(cursor);
+            count++;
+        }
+
+        cursor.close();
+        return count;
+    }
+
+    private byte[] export(DataFormat format)
+    {
+        ByteArrayOutputStream outData = new ByteArrayOutputStream();
+        OutputStreamWriter outStream = new OutputStreamWriter(outData, StandardCharsets.UTF_8);
+        assertTrue(MultiFormatExporter.exportData(db, outStream, format));
+        return outData.toByteArray();
+    }
+
+    private void clearDatabase()
+    {
+        SQLiteDatabase database = db.getWritableDatabase();
+        database.execSQL("delete from " + DBHelper.LoyaltyCardDbIds.TABLE);
+        database.execSQL("delete from " + DBHelper.LoyaltyCardDbGroups.TABLE);
+        database.execSQL("delete from " + DBHelper.LoyaltyCardDbIdsGroups.TABLE);
+    }
+
+    @Test
+    public void listQuery() throws Exception
+    {
+        measure("listQuery", new Operation()
+        {
+            @Override
+            public void run()
+            {
+                assertEquals(CARDS, readAll(db.getLoyaltyCardCursor()));
+            }
+        });
+    }
+
+    @Test
+    public void filteredSearch() throws Exception
+    {
+        measure("filteredSearch", new Operation()
+        {
+            @Override
+            public void run()
+            {
+                readAll(db.getLoyaltyCardCursor("Market"));
+                readAll(db.getLoyaltyCardCursor("no such store"));
+            }
+        });
+    }
+
+    @Test
+    public void groupFilter() throws Exception
+    {
+        final List<Group> groups = db.getGroups();
+
+        measure("groupFilter", new Operation()
+        {
+            @Override
+            public void run()
+            {
+                for(Group group : groups)
+                {
+                    readAll(db.getLoyaltyCardCursor("", group));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void counts() throws Exception
+    {
+        final List<Group> groups = db.getGroups();
+
+        measure("counts", new Operation()
+        {
+            @Override
+            public void run()
+            {
+                assertEquals(CARDS, db.getLoyaltyCardCount());
+                db.getLoyaltyCardCount("Market");
+                db.getGroupCount();
+                for(Group group : groups)
+                {
+                    db.getGroupCardCount(group._id);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void export() throws Exception
+    {
+        for(final DataFormat format : DataFormat.values())
+        {
+            measure("export" + format.name(), new Operation()
+            {
+                @Override
+                public void run()
+                {
+                    export(format);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void importData() throws Exception
+    {
+        for(final DataFormat format : DataFormat.values())
+        {
+            final byte[] data = export(format);
+
+            measure("import" + format.name(), new Operation()
+            {
+                @Override
+                public void run()
+                {
+                    clearDatabase();
+
+                    InputStreamReader inStream = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8);
+                    assertTrue(MultiFormatImporter.importData(db, inStream, format));
+                    assertEquals(CARDS, db.getLoyaltyCardCount());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void migrateFromVersion1() throws Exception
+    {
+        measure("migrateFromVersion1", new Operation()
+        {
+            @Override
+            public void run()
+            {
+                SQLiteDatabase database = db.getWritableDatabase();
+
+                // Recreate the tables as they were in revision 1
+                database.execSQL("drop table if exists " + DBHelper.LoyaltyCardDbIds.TABLE);
+                database.execSQL("drop table if exists " + DBHelper.LoyaltyCardDbGroups.TABLE);
+                database.execSQL("drop table if exists " + DBHelper.LoyaltyCardDbIdsGroups.TABLE);
+                database.execSQL("create table " + DBHelper.LoyaltyCardDbIds.TABLE + "(" +
+                        DBHelper.LoyaltyCardDbIds.ID + " INTEGER primary key autoincrement," +
+                        DBHelper.LoyaltyCardDbIds.STORE + " TEXT not null," +
+                        DBHelper.LoyaltyCardDbIds.CARD_ID + " TEXT not null," +
+                        DBHelper.LoyaltyCardDbIds.BARCODE_TYPE + " TEXT not null)");
+
+                Random random = new Random(42);
+                database.beginTransaction();
+                for(int index = 1; index <= CARDS; index++)
+                {
+                    ContentValues contentValues = new ContentValues();
+                    contentValues.put(DBHelper.LoyaltyCardDbIds.STORE, WalletGenerator.storeName(random, index));
+                    contentValues.put(DBHelper.LoyaltyCardDbIds.CARD_ID, Integer.toString(index));
+                    contentValues.put(DBHelper.LoyaltyCardDbIds.BARCODE_TYPE, "");
+                    database.insert(DBHelper.LoyaltyCardDbIds.TABLE, null, contentValues);
+                }
+                database.setTransactionSuccessful();
+                database.endTransaction();
+
+                db.onUpgrade(database, DBHelper.ORIGINAL_DATABASE_VERSION, DBHelper.DATABASE_VERSION);
+                assertEquals(CARDS, db.getLoyaltyCardCount());
+            }
+        });
+    }
+
+    private static long median(long[] samples)
+    {
+        long[] sorted = Arrays.copyOf(samples, samples.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Rewrites the results file with everything measured so far, so a
+     * partial run still leaves usable output behind.
+     */
+    private static void writeResults() throws IOException
+    {
+        File directory = new File(OUTPUT_DIR);
+        if(!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        File output = new File(directory, "database-" + LABEL + ".json");
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+        writer.setIndent("  ");
+
+        writer.beginObject();
+        writer.name("label").value(LABEL);
+        writer.name("cards").value(CARDS);
+        writer.name("groups").value(GROUPS);
+        writer.name("density").value(DENSITY);
+        writer.name("warmup").value(WARMUP);
+        writer.name("iterations").value(ITERATIONS);
+        writer.name("results");
+        writer.beginArray();
+
+        for(Result result : results)
+        {
+            long min = Long.MAX_VALUE;
+            long total = 0;
+            for(long sample : result.samples)
+            {
+                min = Math.min(min, sample);
+                total += sample;
+            }
+
+            writer.beginObject();
+            writer.name("name").value(result.name);
+            writer.name("minNs").value(min);
+            writer.name("medianNs").value(median(result.samples));
+            writer.name("meanNs").value(total / result.samples.length);
+            writer.name("samplesNs");
+            writer.beginArray();
+            for(long sample : result.samples)
+            {
+                writer.value(sample);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+    }
+}
@@ -0,0 +1,86 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.graphics.Color;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.text.DateFormat;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class ExpiryDatesTest
+{
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private Context context;
+    private ExpiryDates expiryDates;
+
+    @Before
+    public void setUp()
+    {
+        context = ApplicationProvider.getApplicationContext();
+        expiryDates = ExpiryDates.getInstance(context);
+    }
+
+    private LoyaltyCard card(int id, Date expiry)
+    {
+        return new LoyaltyCard(id, "store", "note", expiry, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, Color.WHITE, 0);
+    }
+
+    private String sentence(int resId, Date date)
+    {
+        return context.getString(resId, DateFormat.getDateInstance(DateFormat.LONG).format(date));
+    }
+
+    @Test
+    public void expiryOfToday()
+    {
+        Date today = new Date();
+        ExpiryDates.Expiry expiry = expiryDates.getExpiry(card(1, today));
+
+        assertFalse(expiry.expired);
+        assertEquals(sentence(R.string.expiryStateSentence, today), expiry.text);
+    }
+
+    @Test
+    public void expiryOfYesterday()
+    {
+        Date yesterday = new Date(System.currentTimeMillis() - DAY_MS);
+        ExpiryDates.Expiry expiry = expiryDates.getExpiry(card(1, yesterday));
+
+        assertTrue(expiry.expired);
+        assertEquals(sentence(R.string.expiryStateSentenceExpired, yesterday), expiry.text);
+    }
+
+    @Test
+    public void expiryIsKeptUntilTheDateChanges()
+    {
+        Date today = new Date();
+        ExpiryDates.Expiry expiry = expiryDates.getExpiry(card(1, today));
+        assertSame(expiry, expiryDates.getExpiry(card(1, today)));
+
+        Date nextWeek = new Date(today.getTime() + 7 * DAY_MS);
+        ExpiryDates.Expiry changed = expiryDates.getExpiry(card(1, nextWeek));
+        assertNotSame(expiry, changed);
+        assertEquals(sentence(R.string.expiryStateSentence, nextWeek), changed.text);
+
+        expiryDates.invalidate();
+        assertNotSame(changed, expiryDates.getExpiry(card(1, nextWeek)));
+    }
+}
@@ -76,4 +76,20 @@ public class ImportExportActivityTest
                 R.id.importOptionFilesystemTitle, R.id.importOptionFilesystemExplanation,
                 R.id.importOptionFilesystemButton);
     }
+
+    @Test
+    public void exportInChosenFormat()
+    {
+        ImportExportActivity activity = Robolectric.setupActivity(ImportExportActivity.class);
+
+        for(DataFormat format : DataFormat.values())
+        {
+            activity.exportWith(format);
+
+            Intent intent = shadowOf(activity).getNextStartedActivity();
+            assertEquals(Intent.ACTION_CREATE_DOCUMENT, intent.getAction());
+            assertEquals(format.mimeType, intent.getType());
+            assertEquals("Catima." + format.extension, intent.getStringExtra(Intent.EXTRA_TITLE));
+        }
+    }
 }
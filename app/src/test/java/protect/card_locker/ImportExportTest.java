@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
 
 import com.google.zxing.BarcodeFormat;
 
@@ -24,6 +25,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -31,6 +33,7 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -278,8 +281,8 @@ public class ImportExportTest
             ByteArrayInputStream inData = new ByteArrayInputStream(outData.toByteArray());
             InputStreamReader inStream = new InputStreamReader(inData);
 
-            // Import the CSV data
-            result = MultiFormatImporter.importData(db, inStream, DataFormat.CSV);
+            // Import the data
+            result = MultiFormatImporter.importData(db, inStream, format);
             assertTrue(result);
 
             assertEquals(NUM_CARDS, db.getLoyaltyCardCount());
@@ -313,8 +316,8 @@ public class ImportExportTest
             ByteArrayInputStream inData = new ByteArrayInputStream(outData.toByteArray());
             InputStreamReader inStream = new InputStreamReader(inData);
 
-            // Import the CSV data
-            result = MultiFormatImporter.importData(db, inStream, DataFormat.CSV);
+            // Import the data
+            result = MultiFormatImporter.importData(db, inStream, format);
             assertTrue(result);
 
             assertEquals(NUM_CARDS, db.getLoyaltyCardCount());
@@ -390,8 +393,8 @@ public class ImportExportTest
             ByteArrayInputStream inData = new ByteArrayInputStream(outData.toByteArray());
             InputStreamReader inStream = new InputStreamReader(inData);
 
-            // Import the CSV data
-            result = MultiFormatImporter.importData(db, inStream, DataFormat.CSV);
+            // Import the data
+            result = MultiFormatImporter.importData(db, inStream, format);
             assertTrue(result);
 
             assertEquals(NUM_CARDS, db.getLoyaltyCardCount());
@@ -436,8 +439,8 @@ public class ImportExportTest
             ByteArrayInputStream inData = new ByteArrayInputStream(outData.toByteArray());
             InputStreamReader inStream = new InputStreamReader(inData);
 
-            // Import the CSV data on top of the existing database
-            result = MultiFormatImporter.importData(db, inStream, DataFormat.CSV);
+            // Import the data on top of the existing database
+            result = MultiFormatImporter.importData(db, inStream, format);
             assertTrue(result);
 
             assertEquals(NUM_CARDS, db.getLoyaltyCardCount());
@@ -477,7 +480,7 @@ public class ImportExportTest
             InputStreamReader inStream = new InputStreamReader(inData);
 
             // Attempt to import the CSV data
-            result = MultiFormatImporter.importData(db, inStream, DataFormat.CSV);
+            result = MultiFormatImporter.importData(db, inStream, format);
             assertEquals(false, result);
 
             assertEquals(0, db.getLoyaltyCardCount());
@@ -486,6 +489,138 @@ public class ImportExportTest
         }
     }
 
+    @Test
+    public void multipleCardsExportImportDetectFormat() throws IOException
+    {
+        final int NUM_CARDS = 10;
+
+        for(DataFormat format : DataFormat.values())
+        {
+            addLoyaltyCards(NUM_CARDS);
+
+            ByteArrayOutputStream outData = new ByteArrayOutputStream();
+            OutputStreamWriter outStream = new OutputStreamWriter(outData);
+
+            boolean result = MultiFormatExporter.exportData(db, outStream, format);
+            assertTrue(result);
+            outStream.close();
+
+            clearDatabase();
+
+            ByteArrayInputStream inData = new ByteArrayInputStream(outData.toByteArray());
+            InputStreamReader inStream = new InputStreamReader(inData);
+
+            // Import without telling which format the data is in
+            result = MultiFormatImporter.importData(db, inStream);
+            assertTrue(result);
+
+            assertEquals(NUM_CARDS, db.getLoyaltyCardCount());
+
+            checkLoyaltyCards();
+
+            // Clear the database for the next format under test
+            clearDatabase();
+        }
+    }
+
+    @Test
+    public void detectFormat()
+    {
+        assertEquals(DataFormat.JSON, DataFormatRegistry.detectFormat("{\"version\":1}"));
+        assertEquals(DataFormat.JSON, DataFormatRegistry.detectFormat("\uFEFF\n  {"));
+        assertEquals(DataFormat.CSV, DataFormatRegistry.detectFormat("2\n\n_id\n"));
+        assertEquals(DataFormat.CSV, DataFormatRegistry.detectFormat(DBHelper.LoyaltyCardDbIds.ID + "," + DBHelper.LoyaltyCardDbIds.STORE));
+        assertEquals(DataFormat.CSV, DataFormatRegistry.detectFormat("2\r\n\r\n_id\r\n"));
+        assertEquals(DataFormat.CSV, DataFormatRegistry.detectFormat("\uFEFF" + DBHelper.LoyaltyCardDbIds.STORE + "," + DBHelper.LoyaltyCardDbIds.ID));
+        assertNull(DataFormatRegistry.detectFormat("store,cardid\nstore,12345\n"));
+        assertNull(DataFormatRegistry.detectFormat("<?xml version=\"1.0\"?>"));
+        assertNull(DataFormatRegistry.detectFormat(""));
+    }
+
+    @Test
+    public void importVersion1WithReorderedColumns()
+    {
+        String csvText = "\uFEFF" + DBHelper.LoyaltyCardDbIds.STORE + "," + DBHelper.LoyaltyCardDbIds.CARD_ID + "," +
+                DBHelper.LoyaltyCardDbIds.ID + "\n" +
+                "store,12345,1\n";
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(csvText.getBytes(StandardCharsets.UTF_8));
+        InputStreamReader inStream = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+
+        boolean result = MultiFormatImporter.importData(db, inStream);
+        assertTrue(result);
+        assertEquals(1, db.getLoyaltyCardCount());
+
+        LoyaltyCard card = db.getLoyaltyCard(1);
+        assertEquals("store", card.store);
+        assertEquals("12345", card.cardId);
+    }
+
+    @Test
+    public void importUnknownFormat()
+    {
+        String text = "This is neither CSV nor JSON\n";
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+        InputStreamReader inStream = new InputStreamReader(inputStream);
+
+        boolean result = MultiFormatImporter.importData(db, inStream);
+        assertFalse(result);
+        assertEquals(0, db.getLoyaltyCardCount());
+        assertEquals(0, db.getGroupCount());
+    }
+
+    @Test
+    public void importJson() throws IOException
+    {
+        String jsonText = "{\"version\":1," +
+                "\"cardsGroups\":[{\"cardId\":1,\"groupId\":\"group\"}]," +
+                "\"cards\":[{\"_id\":1,\"store\":\"store\",\"note\":\"note\",\"expiry\":null," +
+                "\"cardid\":\"12345\",\"headercolor\":null,\"barcodetype\":\"type\",\"starstatus\":1," +
+                "\"unknown\":[1,2,3]}]," +
+                "\"groups\":[{\"_id\":\"group\"}]}";
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(jsonText.getBytes(StandardCharsets.UTF_8));
+        InputStreamReader inStream = new InputStreamReader(inputStream);
+
+        boolean result = MultiFormatImporter.importData(db, inStream);
+        assertTrue(result);
+        assertEquals(1, db.getLoyaltyCardCount());
+        assertEquals(1, db.getGroupCount());
+
+        LoyaltyCard card = db.getLoyaltyCard(1);
+
+        assertEquals("store", card.store);
+        assertEquals("note", card.note);
+        assertEquals(null, card.expiry);
+        assertEquals("12345", card.cardId);
+        assertEquals("type", card.barcodeType);
+        assertEquals(1, card.starStatus);
+        assertNull(card.headerColor);
+
+        assertEquals(1, db.getLoyaltyCardGroups(1).size());
+        assertEquals("group", db.getLoyaltyCardGroups(1).get(0)._id);
+
+        clearDatabase();
+    }
+
+    @Test
+    public void importJsonWithoutCardIdNothingSaved() throws IOException
+    {
+        String jsonText = "{\"version\":1,\"cards\":[" +
+                "{\"_id\":1,\"store\":\"store\",\"cardid\":\"12345\"}," +
+                "{\"_id\":2,\"store\":\"store\"}]}";
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(jsonText.getBytes(StandardCharsets.UTF_8));
+        InputStreamReader inStream = new InputStreamReader(inputStream);
+
+        boolean result = MultiFormatImporter.importData(db, inStream, DataFormat.JSON);
+        assertEquals(false, result);
+        assertEquals(0, db.getLoyaltyCardCount());
+
+        clearDatabase();
+    }
+
     class TestTaskCompleteListener implements ImportExportTask.TaskCompleteListener
     {
         Boolean success;
@@ -550,6 +685,87 @@ public class ImportExportTest
         }
     }
 
+    @Test
+    @LooperMode(LooperMode.Mode.LEGACY)
+    public void useImportExportTaskWithFileDescriptor() throws IOException
+    {
+        final int NUM_CARDS = 10;
+
+        final File sdcardDir = Environment.getExternalStorageDirectory();
+        final File exportFile = new File(sdcardDir, "Catima.csv");
+
+        for(DataFormat format : DataFormat.values())
+        {
+            addLoyaltyCards(NUM_CARDS);
+
+            TestTaskCompleteListener listener = new TestTaskCompleteListener();
+
+            // Export to the file
+            FileOutputStream fileOutputStream = new FileOutputStream(exportFile);
+            ImportExportTask task = new ImportExportTask(activity, format, fileOutputStream, listener);
+            task.execute();
+
+            Robolectric.flushBackgroundThreadScheduler();
+
+            assertNotNull(listener.success);
+            assertEquals(true, listener.success);
+
+            clearDatabase();
+
+            // Import everything back through a file descriptor
+            listener = new TestTaskCompleteListener();
+
+            ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(exportFile, ParcelFileDescriptor.MODE_READ_ONLY);
+
+            task = new ImportExportTask(activity, descriptor, listener);
+            task.execute();
+
+            Robolectric.flushBackgroundThreadScheduler();
+
+            assertNotNull(listener.success);
+            assertEquals(true, listener.success);
+
+            assertEquals(NUM_CARDS, db.getLoyaltyCardCount());
+
+            checkLoyaltyCards();
+
+            // Clear the database for the next format under test
+            clearDatabase();
+        }
+    }
+
+    @Test
+    public void mappedFileReaderDecodesAcrossChunks() throws IOException
+    {
+        final File sdcardDir = Environment.getExternalStorageDirectory();
+        final File file = new File(sdcardDir, "mapped.txt");
+
+        // Multi-byte characters and a surrogate pair, so chunk boundaries
+        // fall in the middle of encoded sequences
+        StringBuilder builder = new StringBuilder();
+        for(int index = 0; index < 1000; index++)
+        {
+            builder.append("caf\u00e9 \u20ac\ud83d\ude00 ").append(index).append('\n');
+        }
+        String expected = builder.toString();
+
+        FileOutputStream outputStream = new FileOutputStream(file);
+        outputStream.write(expected.getBytes(StandardCharsets.UTF_8));
+        outputStream.close();
+
+        Reader reader = new MappedFileReader(new FileInputStream(file), 7);
+        StringBuilder actual = new StringBuilder();
+        char[] buffer = new char[5];
+        int count;
+        while((count = reader.read(buffer, 0, buffer.length)) != -1)
+        {
+            actual.append(buffer, 0, count);
+        }
+        reader.close();
+
+        assertEquals(expected, actual.toString());
+    }
+
     @Test
     public void importWithoutColorsV1() throws IOException
     {
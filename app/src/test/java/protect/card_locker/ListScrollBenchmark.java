@@ -0,0 +1,133 @@
+package protect.card_locker;
+
+import android.util.JsonWriter;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Scrolls the card list of MainActivity through a synthetic wallet, see
+ * WalletGenerator, and reports how long binding the rows took.
+ * Thumbnails are LetterTileDrawables, which recycled rows reuse.
+ *
+ * Rows are recycled the way RecyclerView does, with as many view holders
+ * as fit on screen. Takes the same benchmark.* properties as DatabaseBenchmark,
+ * plus benchmark.rows for the number of visible rows. Results are written
+ * as JSON to build/reports/benchmarks/list-scroll-<label>.json.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class ListScrollBenchmark
+{
+    private static final int CARDS = Integer.getInteger("benchmark.cards", 200);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 10);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 3);
+    private static final String LABEL = System.getProperty("benchmark.label", "local");
+    private static final String OUTPUT_DIR = System.getProperty("benchmark.output", "build/reports/benchmarks");
+
+    private static class Run
+    {
+        long nanos;
+    }
+
+    private static Run scroll(RecyclerView list, int iterations)
+    {
+        LoyaltyCardRecyclerAdapter adapter = (LoyaltyCardRecyclerAdapter) list.getAdapter();
+        LoyaltyCardViewHolder[] rows = new LoyaltyCardViewHolder[ROWS];
+
+        long start = System.nanoTime();
+        for(int iteration = 0; iteration < iterations; iteration++)
+        {
+            for(int position = 0; position < adapter.getItemCount(); position++)
+            {
+                int slot = position % ROWS;
+                if(rows[slot] == null)
+                {
+                    rows[slot] = adapter.createViewHolder(list, 0);
+                }
+                adapter.bindViewHolder(rows[slot], position);
+            }
+        }
+
+        Run run = new Run();
+        run.nanos = System.nanoTime() - start;
+        return run;
+    }
+
+    @Test
+    public void scrollList() throws IOException, InterruptedException
+    {
+        new WalletGenerator()
+                .setCardCount(CARDS)
+                .generate(new DBHelper(ApplicationProvider.getApplicationContext()));
+
+        // The cards are loaded and diffed in the background
+        QueuedExecutor executor = new QueuedExecutor();
+        LoyaltyCardListLoader.setExecutor(executor);
+        LoyaltyCardRecyclerAdapter.setDiffExecutor(executor);
+
+        RecyclerView list;
+        try
+        {
+            MainActivity activity = Robolectric.setupActivity(MainActivity.class);
+            list = activity.findViewById(R.id.list);
+            executor.drain();
+        }
+        finally
+        {
+            LoyaltyCardListLoader.setExecutor(null);
+            LoyaltyCardRecyclerAdapter.setDiffExecutor(null);
+        }
+        assertEquals(CARDS, list.getAdapter().getItemCount());
+
+        Run cold = scroll(list, 1);
+        Run warm = scroll(list, ITERATIONS);
+
+        writeResults(cold, warm);
+    }
+
+    private static void writeRun(JsonWriter writer, String name, Run run) throws IOException
+    {
+        writer.name(name);
+        writer.beginObject();
+        writer.name("timeNs").value(run.nanos);
+        writer.endObject();
+    }
+
+    private static void writeResults(Run cold, Run warm) throws IOException
+    {
+        File directory = new File(OUTPUT_DIR);
+        if(!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        File output = new File(directory, "list-scroll-" + LABEL + ".json");
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+        writer.setIndent("  ");
+
+        writer.beginObject();
+        writer.name("label").value(LABEL);
+        writer.name("cards").value(CARDS);
+        writer.name("rows").value(ROWS);
+        writer.name("iterations").value(ITERATIONS);
+        writeRun(writer, "firstPass", cold);
+        writeRun(writer, "laterPasses", warm);
+        writer.endObject();
+        writer.close();
+    }
+}
@@ -21,10 +21,14 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import protect.card_locker.preferences.Settings;
+
 import java.text.DateFormat;
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = 23)
@@ -181,4 +185,46 @@ public class LoyaltyCardCursorAdapterTest
 
         cursor.close();
     }
+
+    @Test
+    public void TestCursorAdapterReusesLetterTile()
+    {
+        db.insertLoyaltyCard("store", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("other", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.WHITE, 0);
+
+        Cursor cursor = db.getLoyaltyCardCursor();
+        LoyaltyCardCursorAdapter adapter = new LoyaltyCardCursorAdapter(activity.getApplicationContext(), cursor);
+
+        cursor.moveToFirst();
+        View view = adapter.newView(activity.getApplicationContext(), cursor, null);
+        adapter.bindView(view, activity.getApplicationContext(), cursor);
+
+        ImageView thumbnail = view.findViewById(R.id.thumbnail);
+        LetterTileDrawable tile = (LetterTileDrawable) thumbnail.getDrawable();
+        assertEquals('O', tile.getLetter());
+        assertEquals(Color.WHITE, tile.getBackgroundColor());
+
+        // Binding the recycled row to another card keeps the same drawable
+        cursor.moveToNext();
+        adapter.bindView(view, activity.getApplicationContext(), cursor);
+        assertSame(tile, thumbnail.getDrawable());
+        assertEquals('S', tile.getLetter());
+        assertEquals(Color.BLACK, tile.getBackgroundColor());
+
+        cursor.close();
+    }
+
+    @Test
+    public void TestSettingsSnapshotIsSharedUntilChanged()
+    {
+        Settings.Snapshot snapshot = Settings.getSnapshot(activity);
+        assertSame(snapshot, Settings.getSnapshot(ApplicationProvider.getApplicationContext()));
+
+        setFontSizes(11, 12);
+
+        Settings.Snapshot changed = Settings.getSnapshot(activity);
+        assertNotSame(snapshot, changed);
+        assertEquals(11, changed.cardTitleListFontSize);
+        assertEquals(12, changed.cardNoteListFontSize);
+    }
 }
@@ -0,0 +1,208 @@
+package protect.card_locker;
+
+import android.content.Context;
+import android.graphics.Color;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class LoyaltyCardIndexTest
+{
+    private DBHelper db;
+    private LoyaltyCardIndex index;
+
+    @Before
+    public void setUp()
+    {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = new DBHelper(context);
+        index = LoyaltyCardIndex.getInstance(context);
+    }
+
+    @Test
+    public void writesUpdateTheIndex()
+    {
+        db.insertLoyaltyCard("storeA", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+
+        CardSearchIndex<LoyaltyCard> built = index.get(db);
+        assertTrue(index.isBuilt());
+        assertSame(built, index.get(db));
+        assertEquals(1, built.search("store").size());
+
+        db.insertLoyaltyCard("storeB", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        assertFalse(index.isBuilt());
+        assertEquals(2, getWithoutDatabase().search("store").size());
+
+        db.updateLoyaltyCard(1, "renamed", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK);
+        assertFalse(index.isBuilt());
+        assertEquals(1, getWithoutDatabase().search("store").size());
+
+        db.updateLoyaltyCardStarStatus(1, 1);
+        assertFalse(index.isBuilt());
+        assertEquals(1, getWithoutDatabase().search("renamed").get(0).starStatus);
+
+        db.deleteLoyaltyCard(1);
+        assertFalse(index.isBuilt());
+        assertEquals(0, getWithoutDatabase().search("renamed").size());
+        assertEquals(1, getWithoutDatabase().size());
+        assertTrue(index.isBuilt());
+
+        // Imports drop it
+        db.cardsChanged();
+        assertFalse(index.isBuilt());
+        assertEquals(1, index.get(db).size());
+    }
+
+    @Test
+    public void writesOnlyDropTheirResults()
+    {
+        db.insertLoyaltyCard("storeA", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("other", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+
+        LoyaltyCardIndex.Results stores = index.search(db, "store", null);
+        LoyaltyCardIndex.Results others = index.search(db, "other", null);
+        assertEquals(2, stores.totalCount);
+
+        // Card 2 is not in the store results
+        db.updateLoyaltyCard(2, "another", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK);
+        assertSame(stores, index.getCached("store", null));
+        assertNull(index.getCached("other", null));
+
+        // A new card may give near matches where there were none
+        assertTrue(index.search(db, "xyz", null).cards.isEmpty());
+        db.insertLoyaltyCard("storeB", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        assertNull(index.getCached("store", null));
+        assertNull(index.getCached("xyz", null));
+        others = index.search(db, "other", null);
+        assertEquals(1, others.cards.size());
+        assertEquals(3, others.totalCount);
+
+        // Deleting a card only drops the results it was in, and counts it
+        // out of the others
+        stores = index.search(db, "store", null);
+        db.deleteLoyaltyCard(2);
+        assertEquals(2, index.getCached("store", null).totalCount);
+        assertEquals(stores.cards, index.getCached("store", null).cards);
+        assertNull(index.getCached("other", null));
+    }
+
+    private CardSearchIndex<LoyaltyCard> getWithoutDatabase()
+    {
+        DBHelper.setMainThreadAccessAllowed(false);
+        try
+        {
+            return index.get(db);
+        }
+        finally
+        {
+            DBHelper.setMainThreadAccessAllowed(true);
+        }
+    }
+
+    @Test
+    public void groupChangesOnlyDropTheirResults()
+    {
+        db.insertLoyaltyCard("storeA", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("storeB", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertGroup("one");
+        db.insertGroup("two");
+        GroupFilter one = GroupFilter.of("one");
+        GroupFilter two = GroupFilter.of("two");
+
+        List<Group> groups = new ArrayList<>();
+        groups.add(db.getGroup("one"));
+        db.setLoyaltyCardGroups(1, groups);
+
+        LoyaltyCardIndex.Results all = index.search(db, "store", null);
+        LoyaltyCardIndex.Results inOne = index.search(db, "store", one);
+        LoyaltyCardIndex.Results inTwo = index.search(db, "store", two);
+        assertEquals(2, all.cards.size());
+        assertEquals(1, inOne.cards.size());
+        assertEquals(0, inTwo.cards.size());
+        assertSame(inOne, index.getCached("store", one));
+
+        // Card 2 entering group one leaves the other results alone
+        db.setLoyaltyCardGroups(2, groups);
+        assertNull(index.getCached("store", one));
+        assertSame(all, index.getCached("store", null));
+        assertSame(inTwo, index.getCached("store", two));
+        assertEquals(2, index.search(db, "store", one).cards.size());
+
+        // Card 1 leaving group one
+        db.setLoyaltyCardGroups(1, Collections.<Group>emptyList());
+        assertNull(index.getCached("store", one));
+        assertSame(inTwo, index.getCached("store", two));
+        assertEquals(1, index.search(db, "store", one).cards.size());
+
+        db.updateGroup("two", "renamed");
+        assertNull(index.getCached("store", two));
+        assertNotNull(index.getCached("store", one));
+
+        db.deleteGroup("one");
+        assertNull(index.getCached("store", one));
+        assertSame(all, index.getCached("store", null));
+
+        db.updateLoyaltyCardStarStatus(1, 1);
+        assertNull(index.getCached("store", null));
+    }
+
+    @Test
+    public void groupMembershipIsUpdatedInPlace()
+    {
+        for(int i = 0; i < 4; i++)
+        {
+            db.insertLoyaltyCard("store" + i, "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        }
+        db.insertGroup("Groceries");
+        db.insertGroup("Travel");
+
+        List<Group> both = new ArrayList<>();
+        both.add(db.getGroup("Groceries"));
+        both.add(db.getGroup("Travel"));
+        db.setLoyaltyCardGroups(1, both);
+        db.setLoyaltyCardGroups(2, both.subList(0, 1));
+        db.setLoyaltyCardGroups(3, both.subList(1, 2));
+
+        GroupFilter all = GroupFilter.all(Arrays.asList("Groceries", "Travel"));
+        GroupFilter any = GroupFilter.any(Arrays.asList("Groceries", "Travel"));
+        assertEquals("{1}", index.getGroupCards(db, all).toString());
+        assertEquals("{1, 2, 3}", index.getGroupCards(db, any).toString());
+        assertEquals(3, index.search(db, "store", any).cards.size());
+
+        db.setLoyaltyCardGroups(2, both);
+        db.setLoyaltyCardGroups(3, Collections.<Group>emptyList());
+
+        // The membership was updated, not read again
+        DBHelper.setMainThreadAccessAllowed(false);
+        try
+        {
+            assertEquals("{1, 2}", index.getGroupCards(db, all).toString());
+            assertEquals("{1, 2}", index.getGroupCards(db, any).toString());
+        }
+        finally
+        {
+            DBHelper.setMainThreadAccessAllowed(true);
+        }
+    }
+}
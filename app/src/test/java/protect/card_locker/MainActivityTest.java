@@ -3,16 +3,20 @@ package protect.card_locker;
 import android.app.Activity;
 import android.content.ComponentName;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.graphics.Color;
 import android.view.Menu;
 import android.view.View;
-import android.widget.ListView;
 import android.widget.TextView;
 
+import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
 import com.google.android.material.tabs.TabLayout;
 import com.google.zxing.BarcodeFormat;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
@@ -21,11 +25,16 @@ import org.robolectric.annotation.Config;
 import org.robolectric.android.controller.ActivityController;
 import org.robolectric.shadows.ShadowActivity;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static android.os.Looper.getMainLooper;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.robolectric.Shadows.shadowOf;
 
@@ -35,10 +44,53 @@ public class MainActivityTest
 {
     private SharedPreferences prefs;
 
+    private final QueuedExecutor executor = new QueuedExecutor();
+
+    @Before
+    public void setUp()
+    {
+        LoyaltyCardListLoader.setExecutor(executor);
+        LoyaltyCardRecyclerAdapter.setDiffExecutor(executor);
+    }
+
+    @After
+    public void tearDown()
+    {
+        LoyaltyCardListLoader.setExecutor(null);
+        LoyaltyCardRecyclerAdapter.setDiffExecutor(null);
+    }
+
+    private static boolean isBusy(MainActivity activity)
+    {
+        LoyaltyCardRecyclerAdapter adapter = (LoyaltyCardRecyclerAdapter) ((RecyclerView) activity.findViewById(R.id.list)).getAdapter();
+        return activity.isLoadingCardList() || adapter.isUpdating();
+    }
+
+    /**
+     * Runs the loads and diffs queued in the background, and what they
+     * post back to the main looper, until the list is up to date.
+     */
+    private void settle(Activity activity) throws InterruptedException
+    {
+        executor.drain();
+        assertFalse(isBusy((MainActivity) activity));
+    }
+
+    private static int cardCount(RecyclerView list)
+    {
+        return list.getAdapter().getItemCount();
+    }
+
+    private static LoyaltyCard card(RecyclerView list, int position)
+    {
+        return ((LoyaltyCardRecyclerAdapter) list.getAdapter()).getCard(position);
+    }
+
     @Test
     public void initiallyNoLoyaltyCards() throws Exception
     {
         Activity activity = Robolectric.setupActivity(MainActivity.class);
+        settle(activity);
         assertTrue(activity != null);
 
         TextView helpText = activity.findViewById(R.id.helpText);
@@ -47,7 +99,7 @@ public class MainActivityTest
         TextView noMatchingCardsText = activity.findViewById(R.id.noMatchingCardsText);
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
 
-        ListView list = activity.findViewById(R.id.list);
+        RecyclerView list = activity.findViewById(R.id.list);
         assertEquals(View.GONE, list.getVisibility());
     }
 
@@ -59,10 +111,11 @@ public class MainActivityTest
         final Menu menu = shadowOf(activity).getOptionsMenu();
         assertTrue(menu != null);
 
-        // The settings, import/export, groups, search and add button should be present
-        assertEquals(menu.size(), 5);
+        // The settings, import/export, groups, group filter, search and add button should be present
+        assertEquals(menu.size(), 6);
         assertEquals("Search", menu.findItem(R.id.action_search).getTitle().toString());
         assertEquals("Groups", menu.findItem(R.id.action_manage_groups).getTitle().toString());
+        assertEquals("Filter by groups", menu.findItem(R.id.action_filter_groups).getTitle().toString());
         assertEquals("Import/Export", menu.findItem(R.id.action_import_export).getTitle().toString());
         assertEquals("About", menu.findItem(R.id.action_about).getTitle().toString());
         assertEquals("Settings", menu.findItem(R.id.action_settings).getTitle().toString());
@@ -80,19 +133,20 @@ public class MainActivityTest
     }
 
     @Test
-    public void addOneLoyaltyCard()
+    public void addOneLoyaltyCard() throws InterruptedException
     {
         ActivityController activityController = Robolectric.buildActivity(MainActivity.class).create();
 
         Activity mainActivity = (Activity)activityController.get();
         activityController.start();
         activityController.resume();
+        settle(mainActivity);
 
         TextView helpText = mainActivity.findViewById(R.id.helpText);
         TextView noMatchingCardsText = mainActivity.findViewById(R.id.noMatchingCardsText);
-        ListView list = mainActivity.findViewById(R.id.list);
+        RecyclerView list = mainActivity.findViewById(R.id.list);
 
-        assertEquals(0, list.getCount());
+        assertEquals(0, cardCount(list));
 
         DBHelper db = new DBHelper(mainActivity);
         db.insertLoyaltyCard("store", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
@@ -103,32 +157,33 @@ public class MainActivityTest
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getAdapter().getCount());
-        Cursor cursor = (Cursor)list.getAdapter().getItem(0);
-        assertNotNull(cursor);
+        assertEquals(1, cardCount(list));
+        assertNotNull(card(list, 0));
 
         db.close();
     }
 
     @Test
-    public void addFourLoyaltyCardsTwoStarred()  // Main screen showing starred cards on top correctly
+    public void addFourLoyaltyCardsTwoStarred() throws InterruptedException  // Main screen showing starred cards on top correctly
     {
         ActivityController activityController = Robolectric.buildActivity(MainActivity.class).create();
 
         Activity mainActivity = (Activity)activityController.get();
         activityController.start();
         activityController.resume();
+        settle(mainActivity);
 
         TextView helpText = mainActivity.findViewById(R.id.helpText);
         TextView noMatchingCardsText = mainActivity.findViewById(R.id.noMatchingCardsText);
-        ListView list = mainActivity.findViewById(R.id.list);
+        RecyclerView list = mainActivity.findViewById(R.id.list);
 
-        assertEquals(0, list.getCount());
+        assertEquals(0, cardCount(list));
 
         DBHelper db = new DBHelper(mainActivity);
         db.insertLoyaltyCard("storeB", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
@@ -142,39 +197,287 @@ public class MainActivityTest
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(4, list.getAdapter().getCount());
-        Cursor cursor = (Cursor)list.getAdapter().getItem(0);
-        assertNotNull(cursor);
-        assertEquals("storeC",cursor.getString(cursor.getColumnIndex("store")));
+        assertEquals(4, cardCount(list));
+        assertEquals("storeC", card(list, 0).store);
+        assertEquals("storeD", card(list, 1).store);
+        assertEquals("storeA", card(list, 2).store);
+        assertEquals("storeB", card(list, 3).store);
+
+        db.close();
+    }
+
+    @Test
+    public void editingCardOnlyChangesItsRow() throws InterruptedException
+    {
+        ActivityController activityController = Robolectric.buildActivity(MainActivity.class).create();
+
+        Activity mainActivity = (Activity)activityController.get();
+        RecyclerView list = mainActivity.findViewById(R.id.list);
 
-        cursor = (Cursor)list.getAdapter().getItem(1);
-        assertNotNull(cursor);
-        assertEquals("storeD",cursor.getString(cursor.getColumnIndex("store")));
+        DBHelper db = new DBHelper(mainActivity);
+        db.insertLoyaltyCard("storeA", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("storeB", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("storeC", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+
+        activityController.start();
+        activityController.resume();
+        settle(mainActivity);
+        assertEquals(3, cardCount(list));
+
+        final int[] changes = new int[2];
+        list.getAdapter().registerAdapterDataObserver(new RecyclerView.AdapterDataObserver()
+        {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload)
+            {
+                changes[0] += itemCount;
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount)
+            {
+                changes[1] += itemCount;
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount)
+            {
+                changes[1] += itemCount;
+            }
+        });
+
+        db.updateLoyaltyCard(2, "storeB", "new note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK);
+
+        activityController.pause();
+        activityController.resume();
+        settle(mainActivity);
 
-        cursor = (Cursor)list.getAdapter().getItem(2);
-        assertNotNull(cursor);
-        assertEquals("storeA",cursor.getString(cursor.getColumnIndex("store")));
+        assertEquals(3, cardCount(list));
+        assertEquals("new note", card(list, 1).note);
+        assertEquals(1, changes[0]);
+        assertEquals(0, changes[1]);
 
-        cursor = (Cursor)list.getAdapter().getItem(3);
-        assertNotNull(cursor);
-        assertEquals("storeB",cursor.getString(cursor.getColumnIndex("store")));
+        db.close();
+    }
+
+    @Test
+    public void noDatabaseAccessOnMainThread() throws InterruptedException
+    {
+        DBHelper db = new DBHelper(ApplicationProvider.getApplicationContext());
+        db.insertLoyaltyCard("storeA", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("storeB", "note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertGroup("Group one");
+        List<Group> groups = new ArrayList<>();
+        groups.add(db.getGroup("Group one"));
+        db.setLoyaltyCardGroups(1, groups);
+        db.close();
 
+        DBHelper.setMainThreadAccessAllowed(false);
+        try
+        {
+            ActivityController activityController = Robolectric.buildActivity(MainActivity.class).create();
+
+            MainActivity mainActivity = (MainActivity)activityController.get();
+            activityController.start();
+            activityController.resume();
+            settle(mainActivity);
+
+            RecyclerView list = mainActivity.findViewById(R.id.list);
+            TabLayout groupTabs = mainActivity.findViewById(R.id.groups);
+
+            assertEquals(2, groupTabs.getTabCount());
+            assertEquals(2, cardCount(list));
+
+            groupTabs.selectTab(groupTabs.getTabAt(1));
+            settle(mainActivity);
+            assertEquals(1, cardCount(list));
+
+            activityController.pause();
+            activityController.resume();
+            settle(mainActivity);
+            assertEquals(1, groupTabs.getSelectedTabPosition());
+            assertEquals(1, cardCount(list));
+        }
+        finally
+        {
+            DBHelper.setMainThreadAccessAllowed(true);
+        }
+    }
+
+    @Test
+    public void searchIsDebouncedAndNarrowedInMemory() throws InterruptedException
+    {
+        DBHelper db = new DBHelper(ApplicationProvider.getApplicationContext());
+        db.insertLoyaltyCard("The First Store", "Initial note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("The Second Store", "Secondary note", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("Other", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.close();
+
+        MainActivity mainActivity = Robolectric.setupActivity(MainActivity.class);
+        settle(mainActivity);
+
+        RecyclerView list = mainActivity.findViewById(R.id.list);
+        assertEquals(3, cardCount(list));
+
+        Menu menu = shadowOf(mainActivity).getOptionsMenu();
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        int queries = mainActivity.getCardListQueries();
+
+        // Nothing is searched while typing
+        searchView.setQuery("s", false);
+        searchView.setQuery("st", false);
+        searchView.setQuery("sto", false);
+        shadowOf(getMainLooper()).idle();
+        assertEquals(3, cardCount(list));
+
+        // Every search extends the previous one, starting at all cards
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(MainActivity.SEARCH_DELAY_MS));
+        settle(mainActivity);
+        assertEquals(2, cardCount(list));
+        assertEquals(queries, mainActivity.getCardListQueries());
+
+        searchView.setQuery("second", false);
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(MainActivity.SEARCH_DELAY_MS));
+        settle(mainActivity);
+        assertEquals(1, cardCount(list));
+        assertEquals(queries + 1, mainActivity.getCardListQueries());
+
+        searchView.setQuery("second xyzzy", false);
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(MainActivity.SEARCH_DELAY_MS));
+        settle(mainActivity);
+        assertEquals(0, cardCount(list));
+        assertEquals(queries + 1, mainActivity.getCardListQueries());
+    }
+
+    @Test
+    public void misspelledSearchShowsNearMatches() throws InterruptedException
+    {
+        DBHelper db = new DBHelper(ApplicationProvider.getApplicationContext());
+        db.insertLoyaltyCard("Starbucks", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("Star Market", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("Starbuck Coffee", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 1);
+        db.close();
+
+        MainActivity mainActivity = Robolectric.setupActivity(MainActivity.class);
+        settle(mainActivity);
+
+        RecyclerView list = mainActivity.findViewById(R.id.list);
+        SearchView searchView = (SearchView) shadowOf(mainActivity).getOptionsMenu().findItem(R.id.action_search).getActionView();
+
+        searchView.setQuery("starbuks", false);
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(MainActivity.SEARCH_DELAY_MS));
+        settle(mainActivity);
+
+        // Starred first, then the closest match
+        assertEquals(2, cardCount(list));
+        assertEquals("Starbuck Coffee", card(list, 0).store);
+        assertEquals("Starbucks", card(list, 1).store);
+
+        TextView noMatchingCardsText = mainActivity.findViewById(R.id.noMatchingCardsText);
+        assertEquals(View.GONE, noMatchingCardsText.getVisibility());
+    }
+
+    @Test
+    public void switchingBackToATabIsServedFromMemory() throws InterruptedException
+    {
+        DBHelper db = new DBHelper(ApplicationProvider.getApplicationContext());
+        db.insertLoyaltyCard("The First Store", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("The Second Store", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertGroup("Group one");
+        List<Group> groups = new ArrayList<>();
+        groups.add(db.getGroup("Group one"));
+        db.setLoyaltyCardGroups(1, groups);
+
+        MainActivity mainActivity = Robolectric.setupActivity(MainActivity.class);
+        settle(mainActivity);
+
+        RecyclerView list = mainActivity.findViewById(R.id.list);
+        TabLayout groupTabs = mainActivity.findViewById(R.id.groups);
+        assertEquals(2, cardCount(list));
+
+        groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
+        assertEquals(1, cardCount(list));
+
+        int queries = mainActivity.getCardListQueries();
+
+        groupTabs.selectTab(groupTabs.getTabAt(0));
+        assertFalse(mainActivity.isLoadingCardList());
+        settle(mainActivity);
+        assertEquals(2, cardCount(list));
+
+        groupTabs.selectTab(groupTabs.getTabAt(1));
+        assertFalse(mainActivity.isLoadingCardList());
+        settle(mainActivity);
+        assertEquals(1, cardCount(list));
+        assertEquals(queries, mainActivity.getCardListQueries());
+
+        // Changing the groups of a card drops what it shows in them
+        db.setLoyaltyCardGroups(2, groups);
+        db.close();
+
+        groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
+        groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
+        assertEquals(2, cardCount(list));
+    }
+
+    @Test
+    public void filterByCombinedGroups() throws InterruptedException
+    {
+        DBHelper db = new DBHelper(ApplicationProvider.getApplicationContext());
+        db.insertLoyaltyCard("Supermarket", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("Airport shop", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertLoyaltyCard("Pharmacy", "", null, "cardId", BarcodeFormat.UPC_A.toString(), Color.BLACK, 0);
+        db.insertGroup("Groceries");
+        db.insertGroup("Travel");
+        List<Group> groups = new ArrayList<>();
+        groups.add(db.getGroup("Groceries"));
+        groups.add(db.getGroup("Travel"));
+        db.setLoyaltyCardGroups(1, groups);
+        db.setLoyaltyCardGroups(2, groups.subList(1, 2));
+
+        MainActivity mainActivity = Robolectric.setupActivity(MainActivity.class);
+        settle(mainActivity);
+
+        RecyclerView list = mainActivity.findViewById(R.id.list);
+        assertEquals(3, cardCount(list));
+        assertTrue(shadowOf(mainActivity).getOptionsMenu().findItem(R.id.action_filter_groups).isVisible());
+
+        mainActivity.filterByGroups(GroupFilter.all(Arrays.asList("Groceries", "Travel")));
+        settle(mainActivity);
+        assertEquals(1, cardCount(list));
+        assertEquals("Supermarket", card(list, 0).store);
+        assertEquals("In all of: Groceries, Travel", mainActivity.getSupportActionBar().getSubtitle().toString());
+
+        mainActivity.filterByGroups(GroupFilter.any(Arrays.asList("Groceries", "Travel")));
+        settle(mainActivity);
+        assertEquals(2, cardCount(list));
+
+        // Back shows the selected tab again
+        mainActivity.onBackPressed();
+        settle(mainActivity);
+        assertEquals(3, cardCount(list));
+        assertNull(mainActivity.getSupportActionBar().getSubtitle());
         db.close();
     }
 
     @Test
-    public void testGroups()
+    public void testGroups() throws InterruptedException
     {
         ActivityController activityController = Robolectric.buildActivity(MainActivity.class).create();
 
         Activity mainActivity = (Activity)activityController.get();
         activityController.start();
         activityController.resume();
+        settle(mainActivity);
 
         DBHelper db = new DBHelper(mainActivity);
 
@@ -187,6 +490,7 @@ public class MainActivityTest
         db.insertGroup("One");
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
         assertEquals(2, groupTabs.getTabCount());
         assertEquals("All", groupTabs.getTabAt(0).getText().toString());
         assertEquals("One", groupTabs.getTabAt(1).getText().toString());
@@ -195,6 +499,7 @@ public class MainActivityTest
         db.insertGroup("Alphabetical two");
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
         assertEquals(3, groupTabs.getTabCount());
         assertEquals("All", groupTabs.getTabAt(0).getText().toString());
         assertEquals("One", groupTabs.getTabAt(1).getText().toString());
@@ -204,6 +509,7 @@ public class MainActivityTest
         db.deleteGroup("Alphabetical two");
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
         assertEquals(2, groupTabs.getTabCount());
         assertEquals("All", groupTabs.getTabAt(0).getText().toString());
         assertEquals("One", groupTabs.getTabAt(1).getText().toString());
@@ -212,23 +518,25 @@ public class MainActivityTest
         db.deleteGroup("One");
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
         assertEquals(0, groupTabs.getTabCount());
 
         db.close();
     }
 
     @Test
-    public void testFiltering()
+    public void testFiltering() throws InterruptedException
     {
         ActivityController activityController = Robolectric.buildActivity(MainActivity.class).create();
 
         MainActivity mainActivity = (MainActivity)activityController.get();
         activityController.start();
         activityController.resume();
+        settle(mainActivity);
 
         TextView helpText = mainActivity.findViewById(R.id.helpText);
         TextView noMatchingCardsText = mainActivity.findViewById(R.id.noMatchingCardsText);
-        ListView list = mainActivity.findViewById(R.id.list);
+        RecyclerView list = mainActivity.findViewById(R.id.list);
         TabLayout groupTabs = mainActivity.findViewById(R.id.groups);
 
         DBHelper db = new DBHelper(mainActivity);
@@ -242,204 +550,229 @@ public class MainActivityTest
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(2, list.getCount());
+        assertEquals(2, cardCount(list));
 
         mainActivity.filter = "store";
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(2, list.getCount());
+        assertEquals(2, cardCount(list));
 
         // Switch to Group one
         groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch back to all groups
         groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(2, list.getCount());
+        assertEquals(2, cardCount(list));
 
         mainActivity.filter = "first";
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch to Group one
         groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch back to all groups
         groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         mainActivity.filter = "initial";
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch to Group one
         groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch back to all groups
         groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         mainActivity.filter = "second";
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch to Group one
         groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.VISIBLE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(0, list.getCount());
+        assertEquals(0, cardCount(list));
 
         // Switch back to all groups
         groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         mainActivity.filter = "company";
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.VISIBLE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(0, list.getCount());
+        assertEquals(0, cardCount(list));
 
         // Switch to Group one
         groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.VISIBLE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(0, list.getCount());
+        assertEquals(0, cardCount(list));
 
         // Switch back to all groups
         groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.VISIBLE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(0, list.getCount());
+        assertEquals(0, cardCount(list));
 
         mainActivity.filter = "";
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(2, list.getCount());
+        assertEquals(2, cardCount(list));
 
         // Switch to Group one
         groupTabs.selectTab(groupTabs.getTabAt(1));
+        settle(mainActivity);
 
         activityController.pause();
         activityController.resume();
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(1, list.getCount());
+        assertEquals(1, cardCount(list));
 
         // Switch back to all groups
         groupTabs.selectTab(groupTabs.getTabAt(0));
+        settle(mainActivity);
 
         assertEquals(View.GONE, helpText.getVisibility());
         assertEquals(View.GONE, noMatchingCardsText.getVisibility());
         assertEquals(View.VISIBLE, list.getVisibility());
 
-        assertEquals(2, list.getCount());
+        assertEquals(2, cardCount(list));
 
         db.close();
     }
@@ -0,0 +1,50 @@
+package protect.card_locker;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static android.os.Looper.getMainLooper;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Keeps background work until the test runs it with drain(), so a test
+ * knows exactly when loads and diffs are done instead of polling for them.
+ *
+ * Every task still runs on a thread of its own, so code checking that it
+ * is off the main thread behaves as in the app.
+ */
+class QueuedExecutor implements Executor
+{
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public synchronized void execute(Runnable task)
+    {
+        tasks.add(task);
+    }
+
+    private synchronized Runnable poll()
+    {
+        return tasks.poll();
+    }
+
+    /**
+     * Runs the queued tasks one after the other and what the main looper
+     * has for them, until neither has anything left.
+     */
+    void drain() throws InterruptedException
+    {
+        shadowOf(getMainLooper()).idle();
+
+        Runnable task;
+        while((task = poll()) != null)
+        {
+            Thread worker = new Thread(task);
+            worker.start();
+            worker.join();
+
+            // Results are posted to the main looper, which may queue more
+            shadowOf(getMainLooper()).idle();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package protect.card_locker;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills a database with a synthetic wallet of a configurable size.
+ *
+ * The same seed and base time always produce the same wallet, so numbers
+ * measured on different commits can be compared. Expiry dates are spread
+ * around the base time, which is fixed unless set.
+ */
+public class WalletGenerator
+{
+    private static final String[] STORE_WORDS = {
+            "Super", "Mega", "City", "Green", "Fresh", "Market", "Pharmacy", "Fuel",
+            "Books", "Coffee", "Travel", "Home", "Garden", "Sports", "Fashion", "Pet"
+    };
+
+    private static final String[] BARCODE_TYPES = {
+            BarcodeFormat.CODE_128.name(), BarcodeFormat.EAN_13.name(),
+            BarcodeFormat.QR_CODE.name(), BarcodeFormat.UPC_A.name()
+    };
+
+    private int cardCount = 100;
+    private int groupCount = 5;
+    private double membershipDensity = 0.2;
+    private double starredFraction = 0.1;
+    private double expiryFraction = 0.25;
+    private long seed = 42;
+    // 2026-01-01 00:00:00 UTC
+    private long baseTime = 1767225600000L;
+
+    public WalletGenerator setCardCount(int cardCount)
+    {
+        this.cardCount = cardCount;
+        return this;
+    }
+
+    public WalletGenerator setGroupCount(int groupCount)
+    {
+        this.groupCount = groupCount;
+        return this;
+    }
+
+    /**
+     * Chance, between 0 and 1, that a card is a member of any one group.
+     */
+    public WalletGenerator setMembershipDensity(double membershipDensity)
+    {
+        this.membershipDensity = membershipDensity;
+        return this;
+    }
+
+    public WalletGenerator setStarredFraction(double starredFraction)
+    {
+        this.starredFraction = starredFraction;
+        return this;
+    }
+
+    public WalletGenerator setExpiryFraction(double expiryFraction)
+    {
+        this.expiryFraction = expiryFraction;
+        return this;
+    }
+
+    public WalletGenerator setSeed(long seed)
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Time in milliseconds the expiry dates are spread around.
+     */
+    public WalletGenerator setBaseTime(long baseTime)
+    {
+        this.baseTime = baseTime;
+        return this;
+    }
+
+    public int getCardCount()
+    {
+        return cardCount;
+    }
+
+    public int getGroupCount()
+    {
+        return groupCount;
+    }
+
+    public double getMembershipDensity()
+    {
+        return membershipDensity;
+    }
+
+    public static String groupName(int index)
+    {
+        return String.format("Group %d", index);
+    }
+
+    public static String storeName(Random random, int index)
+    {
+        return STORE_WORDS[random.nextInt(STORE_WORDS.length)] + " " +
+                STORE_WORDS[random.nextInt(STORE_WORDS.length)] + " " + index;
+    }
+
+    /**
+     * Inserts the wallet into the given database in a single transaction.
+     * Card ids start at 1 and groups are named by groupName().
+     */
+    public void generate(DBHelper helper)
+    {
+        Random random = new Random(seed);
+
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.beginTransaction();
+
+        try
+        {
+            List<Group> groups = new ArrayList<>();
+            for(int index = 0; index < groupCount; index++)
+            {
+                String name = groupName(index);
+                helper.insertGroup(database, name);
+                groups.add(new Group(name));
+            }
+
+            for(int id = 1; id <= cardCount; id++)
+            {
+                String store = storeName(random, id);
+                String note = random.nextBoolean() ? "" : "Note for " + store;
+                Date expiry = null;
+                if(random.nextDouble() < expiryFraction)
+                {
+                    // Somewhere within a year before or after the base time
+                    expiry = new Date(baseTime + (long) ((random.nextDouble() * 2 - 1) * 365L * 24 * 60 * 60 * 1000));
+                }
+                String cardId = String.format("%012d", Math.abs(random.nextLong() % 1000000000000L));
+                String barcodeType = BARCODE_TYPES[random.nextInt(BARCODE_TYPES.length)];
+                int starStatus = random.nextDouble() < starredFraction ? 1 : 0;
+
+                helper.insertLoyaltyCard(database, id, store, note, expiry, cardId, barcodeType, random.nextInt(), starStatus);
+
+                List<Group> cardGroups = new ArrayList<>();
+                for(Group group : groups)
+                {
+                    if(random.nextDouble() < membershipDensity)
+                    {
+                        cardGroups.add(group);
+                    }
+                }
+
+                if(!cardGroups.isEmpty())
+                {
+                    helper.setLoyaltyCardGroups(database, id, cardGroups);
+                }
+            }
+
+            database.setTransactionSuccessful();
+        }
+        finally
+        {
+            database.endTransaction();
+        }
+    }
+}
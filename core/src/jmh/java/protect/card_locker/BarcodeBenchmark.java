@@ -0,0 +1,149 @@
+package protect.card_locker;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The platform independent steps of BarcodeImageWriterTask.doInBackground(),
+ * for every format the app offers, at the size the app renders them.
+ *
+ * Run with the GC profiler (enabled in core/build.gradle) to also get the
+ * allocation rate, gc.alloc.rate.norm is the bytes allocated per render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BarcodeBenchmark
+{
+    // Every format in BarcodeSelectorActivity.SUPPORTED_BARCODE_TYPES
+    @Param({"AZTEC", "CODE_39", "CODE_128", "CODABAR", "DATA_MATRIX", "EAN_8",
+            "EAN_13", "ITF", "PDF_417", "QR_CODE", "UPC_A"})
+    public BarcodeFormat format;
+
+    /**
+     * Card id length class. Formats with a fixed length (EAN and UPC)
+     * use the same id for every class.
+     */
+    @Param({"short", "typical", "long"})
+    public String length;
+
+    private String cardId;
+    private int width;
+    private int height;
+    private BitMatrix matrix;
+
+    private static String digits(int count)
+    {
+        StringBuilder builder = new StringBuilder(count);
+        for(int index = 0; index < count; index++)
+        {
+            builder.append((char) ('0' + (index * 7 + 3) % 10));
+        }
+        return builder.toString();
+    }
+
+    static String cardIdFor(BarcodeFormat format, String length)
+    {
+        int count;
+        switch(length)
+        {
+            case "short":
+                count = 6;
+                break;
+            case "typical":
+                count = 14;
+                break;
+            case "long":
+                count = 32;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown length: " + length);
+        }
+
+        switch(format)
+        {
+            case EAN_8:
+                return "9638507";
+            case EAN_13:
+                return "400638133393";
+            case UPC_A:
+                return "03600029145";
+            case CODE_39:
+                // Upper case letters and digits only
+                return ("CARD" + digits(count)).substring(0, count);
+            default:
+                // ITF needs an even number of digits, which all counts are
+                return digits(count);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        cardId = cardIdFor(format, length);
+
+        // A typical barcode view is about three times as wide as it is high
+        // for 1D codes, and square for 2D codes
+        width = BarcodeGenerator.getMaxWidth(format);
+        height = BarcodeGenerator.is2D(format) ? width : width / 3;
+
+        matrix = encode();
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws Exception
+    {
+        return BarcodeGenerator.encode(cardId, format, width, height);
+    }
+
+    @Benchmark
+    public int[] toPixels()
+    {
+        return BarcodeGenerator.toPixels(matrix);
+    }
+
+    /**
+     * The row by row conversion used for RGB_565 bitmaps, at the same
+     * scale the app would draw the matrix.
+     */
+    @Benchmark
+    public int[] toScaledRows()
+    {
+        int scale = Math.max(1, BarcodeGenerator.getScalingFactor(matrix, width, height));
+        int[] row = new int[matrix.getWidth() * scale];
+        int rows = BarcodeGenerator.is2D(format) ? matrix.getHeight() : 1;
+
+        for(int y = 0; y < rows; y++)
+        {
+            BarcodeGenerator.toScaledRow(matrix, y, scale, row);
+        }
+        return row;
+    }
+
+    /**
+     * Encode and convert, the full work done before handing the pixels
+     * to a Bitmap.
+     */
+    @Benchmark
+    public int[] render() throws Exception
+    {
+        return BarcodeGenerator.toPixels(BarcodeGenerator.encode(cardId, format, width, height));
+    }
+}
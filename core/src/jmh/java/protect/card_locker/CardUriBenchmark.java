@@ -0,0 +1,42 @@
+package protect.card_locker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and parsing the share URI query of a single card.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardUriBenchmark
+{
+    private final CardRecord card = new CardRecord(1, "Super Market & Co", "Members card, expires soon",
+            new Date(1600000000000L), "4006381333931", "EAN_13", -416706, null, 0);
+    private final String query = CardUriCodec.toQuery(card);
+
+    @Benchmark
+    public String toQuery()
+    {
+        return CardUriCodec.toQuery(card);
+    }
+
+    @Benchmark
+    public CardRecord fromQuery() throws Exception
+    {
+        return CardUriCodec.fromQuery(query);
+    }
+}
@@ -0,0 +1,88 @@
+package protect.card_locker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export and import of a synthetic wallet through the CSV codec, against
+ * in-memory storage so only the codec itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmark
+{
+    @Param({"100", "1000", "10000"})
+    public int cards;
+
+    @Param({"10"})
+    public int groups;
+
+    private InMemoryCardStorage storage;
+    private String exported;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Random random = new Random(42);
+        storage = new InMemoryCardStorage();
+
+        for(int index = 0; index < groups; index++)
+        {
+            storage.insertGroup("Group " + index);
+        }
+
+        for(int id = 1; id <= cards; id++)
+        {
+            Date expiry = random.nextInt(4) == 0 ? new Date(random.nextInt()) : null;
+            storage.insertCard(new CardRecord(id, "Store " + random.nextInt(1000) + " " + id,
+                    random.nextBoolean() ? "" : "Note, \"quoted\" " + id, expiry,
+                    String.format("%012d", random.nextInt(Integer.MAX_VALUE)), "CODE_128",
+                    random.nextInt(), null, random.nextInt(10) == 0 ? 1 : 0));
+
+            for(int index = 0; index < groups; index++)
+            {
+                if(random.nextInt(5) == 0)
+                {
+                    storage.addCardToGroup(id, "Group " + index);
+                }
+            }
+        }
+
+        exported = exportCsv();
+    }
+
+    @Benchmark
+    public String exportCsv() throws Exception
+    {
+        StringWriter output = new StringWriter();
+        new CsvCardExporter().exportData(storage, output);
+        return output.toString();
+    }
+
+    @Benchmark
+    public InMemoryCardStorage importCsv() throws Exception
+    {
+        InMemoryCardStorage target = new InMemoryCardStorage();
+        new CsvCardImporter().importData(target, new StringReader(exported));
+        return target;
+    }
+}
@@ -0,0 +1,153 @@
+package protect.card_locker;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Platform independent part of barcode rendering: picking the target
+ * size, encoding the card id into a BitMatrix and turning that into
+ * ARGB pixels.
+ */
+public class BarcodeGenerator
+{
+    // When drawn in a smaller window 1D barcodes for some reason end up
+    // squished, whereas 2D barcodes look fine.
+    public static final int MAX_WIDTH_1D = 1500;
+    public static final int MAX_WIDTH_2D = 500;
+
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int BLACK = 0xFF000000;
+
+    public static boolean is2D(BarcodeFormat format)
+    {
+        switch(format)
+        {
+            case AZTEC:
+            case DATA_MATRIX:
+            case MAXICODE:
+            case PDF_417:
+            case QR_CODE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    public static int getMaxWidth(BarcodeFormat format)
+    {
+        return is2D(format) ? MAX_WIDTH_2D : MAX_WIDTH_1D;
+    }
+
+    /**
+     * Returns the {width, height} to encode at for a view of the given size,
+     * scaling down proportionally if the view is wider than the format needs.
+     */
+    public static int[] getTargetSize(BarcodeFormat format, int viewWidth, int viewHeight)
+    {
+        final int MAX_WIDTH = getMaxWidth(format);
+
+        if(viewWidth < MAX_WIDTH)
+        {
+            return new int[]{viewWidth, viewHeight};
+        }
+
+        // Scale down the image to reduce the memory needed to produce it
+        double ratio = (double)MAX_WIDTH / (double)viewWidth;
+        return new int[]{MAX_WIDTH, (int)(viewHeight * ratio)};
+    }
+
+    /**
+     * Encodes the card id in the given format.
+     *
+     * @throws WriterException if the card id cannot be represented in the format
+     */
+    public static BitMatrix encode(String cardId, BarcodeFormat format, int width, int height) throws WriterException
+    {
+        MultiFormatWriter writer = new MultiFormatWriter();
+
+        try
+        {
+            return writer.encode(cardId, format, width, height, null);
+        }
+        catch(Exception e)
+        {
+            // Cast a wider net here and catch any exception, as there are some
+            // cases where an encoder may fail if the data is invalid for the
+            // barcode type. If this happens, we want to fail gracefully.
+            throw new WriterException(e);
+        }
+    }
+
+    /**
+     * Converts the matrix into opaque black and white ARGB pixels,
+     * row by row.
+     */
+    public static int[] toPixels(BitMatrix bitMatrix)
+    {
+        int bitMatrixWidth = bitMatrix.getWidth();
+        int bitMatrixHeight = bitMatrix.getHeight();
+
+        int[] pixels = new int[bitMatrixWidth * bitMatrixHeight];
+
+        for (int y = 0; y < bitMatrixHeight; y++)
+        {
+            int offset = y * bitMatrixWidth;
+            for (int x = 0; x < bitMatrixWidth; x++)
+            {
+                int color = bitMatrix.get(x, y) ? BLACK : WHITE;
+                pixels[offset + x] = color;
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Fills one output row with the pixels of a matrix row, each module
+     * repeated scale times. The row must hold getWidth() * scale pixels.
+     *
+     * Drawing the image row by row keeps peak memory at one row instead of
+     * a full ARGB copy of the image, and 1D codes can reuse the same row
+     * for the whole height.
+     */
+    public static void toScaledRow(BitMatrix bitMatrix, int y, int scale, int[] row)
+    {
+        int bitMatrixWidth = bitMatrix.getWidth();
+        int x = 0;
+
+        while(x < bitMatrixWidth)
+        {
+            // Fill whole runs of the same color at once
+            boolean black = bitMatrix.get(x, y);
+            int end = x + 1;
+            while(end < bitMatrixWidth && bitMatrix.get(end, y) == black)
+            {
+                end++;
+            }
+
+            Arrays.fill(row, x * scale, end * scale, black ? BLACK : WHITE);
+            x = end;
+        }
+    }
+
+    /**
+     * Integer factor to upscale the matrix by to fill the target size.
+     *
+     * This is necessary because the datamatrix barcode generator
+     * ignores the requested size and returns the smallest image necessary
+     * to represent the barcode. If we let the ImageView scale the image
+     * it will use bi-linear filtering, which results in a blurry barcode.
+     * To avoid this, if scaling is needed do so without filtering.
+     */
+    public static int getScalingFactor(BitMatrix bitMatrix, int width, int height)
+    {
+        int heightScale = height / bitMatrix.getHeight();
+        int widthScale = width / bitMatrix.getWidth();
+        return Math.min(heightScale, widthScale);
+    }
+}
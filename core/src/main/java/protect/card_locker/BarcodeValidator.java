@@ -0,0 +1,229 @@
+package protect.card_locker;
+
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * Checks whether a card id can be encoded in a barcode format without
+ * encoding it, mirroring the checks of the zxing writers.
+ *
+ * For 1D formats the rules are exact: charset, length and check digit.
+ * For 2D formats only ids that can never fit are rejected, anything else
+ * is left to the encoder.
+ */
+public class BarcodeValidator
+{
+    // See zxing's Code39Writer and CodaBarWriter
+    private static final String CODE_39_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%";
+    private static final String CODABAR_BODY = "0123456789-$:/.+";
+    private static final String CODABAR_GUARDS = "ABCD";
+    private static final String CODABAR_ALT_GUARDS = "TN*E";
+
+    // Longest content the 1D writers accept
+    private static final int MAX_1D_LENGTH = 80;
+
+    // QR code version 40 holds this many digits at the lowest error correction
+    private static final int MAX_QR_LENGTH = 7089;
+
+    // Code 128 function characters, see zxing's Code128Writer
+    private static final char CODE_128_FNC_FIRST = '\u00f1';
+    private static final char CODE_128_FNC_LAST = '\u00f4';
+
+    public static boolean isValid(String cardId, BarcodeFormat format)
+    {
+        if(cardId == null || cardId.isEmpty())
+        {
+            return false;
+        }
+
+        switch(format)
+        {
+            case EAN_8:
+                return isValidUpcEan(cardId, 8);
+            case EAN_13:
+                return isValidUpcEan(cardId, 13);
+            case UPC_A:
+                return isValidUpcEan(cardId, 12);
+            case ITF:
+                return isDigits(cardId) && cardId.length() % 2 == 0 && cardId.length() <= MAX_1D_LENGTH;
+            case CODE_39:
+                return isValidCode39(cardId);
+            case CODE_128:
+                return isValidCode128(cardId);
+            case CODABAR:
+                return isValidCodabar(cardId);
+            case DATA_MATRIX:
+                return isLatin1(cardId);
+            case QR_CODE:
+                return cardId.length() <= MAX_QR_LENGTH;
+            default:
+                // Let the encoder decide
+                return true;
+        }
+    }
+
+    private static boolean isDigits(String value)
+    {
+        for(int index = 0; index < value.length(); index++)
+        {
+            char c = value.charAt(index);
+            if(c < '0' || c > '9')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLatin1(String value)
+    {
+        for(int index = 0; index < value.length(); index++)
+        {
+            if(value.charAt(index) > 0xFF)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * EAN-8, EAN-13 and UPC-A take either the digits without the check
+     * digit, which is then calculated, or all digits with a correct one.
+     */
+    private static boolean isValidUpcEan(String cardId, int length)
+    {
+        if(!isDigits(cardId))
+        {
+            return false;
+        }
+
+        if(cardId.length() == length - 1)
+        {
+            return true;
+        }
+
+        return cardId.length() == length && hasValidCheckDigit(cardId);
+    }
+
+    /**
+     * The UPC/EAN check digit: digits are weighted 3 and 1 alternately,
+     * starting with 3 next to the check digit.
+     */
+    static boolean hasValidCheckDigit(String digits)
+    {
+        int sum = 0;
+        int last = digits.length() - 1;
+
+        for(int index = last - 1; index >= 0; index--)
+        {
+            int digit = digits.charAt(index) - '0';
+            sum += (last - index) % 2 == 1 ? digit * 3 : digit;
+        }
+
+        return (10 - sum % 10) % 10 == digits.charAt(last) - '0';
+    }
+
+    /**
+     * If any character is outside the Code 39 alphabet, the whole id is
+     * written in extended mode, where everything but digits, upper case
+     * letters, space, '-' and '.' takes two symbols.
+     */
+    private static boolean isValidCode39(String cardId)
+    {
+        boolean extended = false;
+
+        for(int index = 0; index < cardId.length(); index++)
+        {
+            char c = cardId.charAt(index);
+            if(c > 127)
+            {
+                return false;
+            }
+
+            if(CODE_39_ALPHABET.indexOf(c) < 0)
+            {
+                extended = true;
+            }
+        }
+
+        if(!extended)
+        {
+            return cardId.length() <= MAX_1D_LENGTH;
+        }
+
+        int symbols = 0;
+        for(int index = 0; index < cardId.length(); index++)
+        {
+            char c = cardId.charAt(index);
+            boolean single = (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z')
+                    || c == ' ' || c == '-' || c == '.';
+            symbols += single ? 1 : 2;
+        }
+
+        return symbols <= MAX_1D_LENGTH;
+    }
+
+    private static boolean isValidCode128(String cardId)
+    {
+        if(cardId.length() > MAX_1D_LENGTH)
+        {
+            return false;
+        }
+
+        for(int index = 0; index < cardId.length(); index++)
+        {
+            char c = cardId.charAt(index);
+            if(c > 127 && (c < CODE_128_FNC_FIRST || c > CODE_128_FNC_LAST))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Either both or neither of the first and last character are start/stop
+     * guards of the same set. Without guards the writer adds them.
+     */
+    private static boolean isValidCodabar(String cardId)
+    {
+        int bodyStart = 0;
+        int bodyEnd = cardId.length();
+
+        if(cardId.length() >= 2)
+        {
+            char first = Character.toUpperCase(cardId.charAt(0));
+            char last = Character.toUpperCase(cardId.charAt(cardId.length() - 1));
+
+            boolean startsNormal = CODABAR_GUARDS.indexOf(first) >= 0;
+            boolean endsNormal = CODABAR_GUARDS.indexOf(last) >= 0;
+            boolean startsAlt = CODABAR_ALT_GUARDS.indexOf(first) >= 0;
+            boolean endsAlt = CODABAR_ALT_GUARDS.indexOf(last) >= 0;
+
+            if(startsNormal || startsAlt)
+            {
+                if(startsNormal ? !endsNormal : !endsAlt)
+                {
+                    return false;
+                }
+                bodyStart = 1;
+                bodyEnd = cardId.length() - 1;
+            }
+            else if(endsNormal || endsAlt)
+            {
+                return false;
+            }
+        }
+
+        for(int index = bodyStart; index < bodyEnd; index++)
+        {
+            if(CODABAR_BODY.indexOf(cardId.charAt(index)) < 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package protect.card_locker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches cards against a search filter the way the card list query does,
+ * which is "store LIKE %filter% OR note LIKE %filter%".
+ *
+ * Like SQLite's LIKE, only ASCII letters are compared case-insensitively.
+ * Filters containing the LIKE wildcards % and _ are left to the database.
+ */
+public class CardFilter
+{
+    public static boolean hasWildcards(String filter)
+    {
+        return filter.indexOf('%') != -1 || filter.indexOf('_') != -1;
+    }
+
+    /**
+     * Returns true if every card matching next also matches previous, so
+     * the result for next can be taken from the result for previous.
+     */
+    public static boolean canNarrow(String previous, String next)
+    {
+        if(previous == null || next == null)
+        {
+            return false;
+        }
+
+        if(hasWildcards(previous) || hasWildcards(next))
+        {
+            return false;
+        }
+
+        return indexOfIgnoreAsciiCase(next, previous) != -1;
+    }
+
+    public static boolean matches(CardRecord card, String filter)
+    {
+        return indexOfIgnoreAsciiCase(card.store, filter) != -1
+                || indexOfIgnoreAsciiCase(card.note, filter) != -1;
+    }
+
+    /**
+     * Returns the cards matching filter, in their original order.
+     */
+    public static <T extends CardRecord> List<T> narrow(List<T> cards, String filter)
+    {
+        List<T> result = new ArrayList<>();
+
+        for(T card : cards)
+        {
+            if(matches(card, filter))
+            {
+                result.add(card);
+            }
+        }
+
+        return result;
+    }
+
+    static int indexOfIgnoreAsciiCase(String text, String pattern)
+    {
+        int last = text.length() - pattern.length();
+
+        for(int start = 0; start <= last; start++)
+        {
+            int i = 0;
+            while(i < pattern.length()
+                    && toLowerAscii(text.charAt(start + i)) == toLowerAscii(pattern.charAt(i)))
+            {
+                i++;
+            }
+
+            if(i == pattern.length())
+            {
+                return start;
+            }
+        }
+
+        return -1;
+    }
+
+    private static char toLowerAscii(char c)
+    {
+        if(c >= 'A' && c <= 'Z')
+        {
+            return (char) (c + ('a' - 'A'));
+        }
+
+        return c;
+    }
+}
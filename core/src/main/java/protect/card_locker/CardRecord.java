@@ -0,0 +1,40 @@
+package protect.card_locker;
+
+import java.util.Date;
+
+/**
+ * The stored fields of a loyalty card, independent of where they
+ * are stored.
+ */
+public class CardRecord
+{
+    public final int id;
+    public final String store;
+    public final String note;
+    public final Date expiry;
+    public final String cardId;
+    public final String barcodeType;
+
+    // May be null
+    public final Integer headerColor;
+
+    // May be null
+    public final Integer headerTextColor;
+
+    public final int starStatus;
+
+    public CardRecord(final int id, final String store, final String note, final Date expiry, final String cardId,
+                      final String barcodeType, final Integer headerColor, final Integer headerTextColor,
+                      final int starStatus)
+    {
+        this.id = id;
+        this.store = store;
+        this.note = note;
+        this.expiry = expiry;
+        this.cardId = cardId;
+        this.barcodeType = barcodeType;
+        this.headerColor = headerColor;
+        this.headerTextColor = headerTextColor;
+        this.starStatus = starStatus;
+    }
+}
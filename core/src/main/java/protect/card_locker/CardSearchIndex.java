@@ -0,0 +1,605 @@
+package protect.card_locker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory index answering card list searches without the
+ * database. Results are the same as CardFilter would give, in the order
+ * of the card list query: starred cards first, then by store name.
+ *
+ * The words of every store and note are kept once in a sorted array,
+ * each with the positions of the cards using it. Searching for a part of
+ * a word binary searches a suffix array over those words, so a query
+ * only looks at the cards sharing its words and never scans the wallet.
+ *
+ * For misspelled store names there is searchFuzzy, which only computes
+ * edit distances for stores sharing enough letter pairs with the filter.
+ */
+public class CardSearchIndex<T extends CardRecord>
+{
+    // Same order as "ORDER BY starStatus DESC, store COLLATE NOCASE ASC"
+    static final Comparator<CardRecord> CARD_ORDER = new Comparator<CardRecord>()
+    {
+        @Override
+        public int compare(CardRecord a, CardRecord b)
+        {
+            if(a.starStatus != b.starStatus)
+            {
+                return b.starStatus > a.starStatus ? 1 : -1;
+            }
+
+            int result = compareIgnoreAsciiCase(a.store, b.store);
+            if(result != 0)
+            {
+                return result;
+            }
+
+            return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+        }
+    };
+
+    // Cards in display order, positions in it are used everywhere else
+    private final T[] cards;
+
+    // Distinct words, lower cased like CardFilter does
+    private final String[] words;
+
+    // Ascending card positions of every word
+    private final int[][] postings;
+
+    // Every suffix of every word as word index and offset, sorted by suffix
+    private final int[] suffixWords;
+    private final int[] suffixOffsets;
+
+    // Distinct pairs of adjacent letters in lower cased store names, sorted,
+    // with the ascending positions of the cards having them
+    private final int[] storeBigrams;
+    private final int[][] storeBigramPostings;
+
+    private CardSearchIndex(T[] cards, String[] words, int[][] postings, int[] suffixWords, int[] suffixOffsets,
+                            int[] storeBigrams, int[][] storeBigramPostings)
+    {
+        this.cards = cards;
+        this.words = words;
+        this.postings = postings;
+        this.suffixWords = suffixWords;
+        this.suffixOffsets = suffixOffsets;
+        this.storeBigrams = storeBigrams;
+        this.storeBigramPostings = storeBigramPostings;
+    }
+
+    public static <T extends CardRecord> CardSearchIndex<T> build(Collection<T> cards)
+    {
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) cards.toArray(new CardRecord[0]);
+        Arrays.sort(sorted, CARD_ORDER);
+
+        // Word to the positions using it, ascending as cards are visited in order
+        TreeMap<String, IntList> wordCards = new TreeMap<>();
+        TreeMap<Integer, IntList> bigramCards = new TreeMap<>();
+        for(int position = 0; position < sorted.length; position++)
+        {
+            addWords(wordCards, sorted[position].store, position);
+            addWords(wordCards, sorted[position].note, position);
+            addBigrams(bigramCards, sorted[position].store, position);
+        }
+
+        int[] storeBigrams = new int[bigramCards.size()];
+        int[][] storeBigramPostings = new int[bigramCards.size()][];
+        int bigram = 0;
+        for(Integer key : bigramCards.keySet())
+        {
+            storeBigrams[bigram] = key;
+            storeBigramPostings[bigram] = bigramCards.get(key).toArray();
+            bigram++;
+        }
+
+        String[] words = wordCards.keySet().toArray(new String[0]);
+        int[][] postings = new int[words.length][];
+        int suffixCount = 0;
+        for(int i = 0; i < words.length; i++)
+        {
+            postings[i] = wordCards.get(words[i]).toArray();
+            suffixCount += words[i].length();
+        }
+
+        final String[] allWords = words;
+        Integer[] suffixes = new Integer[suffixCount];
+        final int[] suffixWords = new int[suffixCount];
+        final int[] suffixOffsets = new int[suffixCount];
+        int suffix = 0;
+        for(int i = 0; i < words.length; i++)
+        {
+            for(int offset = 0; offset < words[i].length(); offset++)
+            {
+                suffixWords[suffix] = i;
+                suffixOffsets[suffix] = offset;
+                suffixes[suffix] = suffix;
+                suffix++;
+            }
+        }
+
+        Arrays.sort(suffixes, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                String wordA = allWords[suffixWords[a]];
+                String wordB = allWords[suffixWords[b]];
+                int offsetA = suffixOffsets[a];
+                int offsetB = suffixOffsets[b];
+
+                int length = Math.min(wordA.length() - offsetA, wordB.length() - offsetB);
+                for(int i = 0; i < length; i++)
+                {
+                    char charA = wordA.charAt(offsetA + i);
+                    char charB = wordB.charAt(offsetB + i);
+                    if(charA != charB)
+                    {
+                        return charA - charB;
+                    }
+                }
+
+                return (wordA.length() - offsetA) - (wordB.length() - offsetB);
+            }
+        });
+
+        int[] sortedWords = new int[suffixCount];
+        int[] sortedOffsets = new int[suffixCount];
+        for(int i = 0; i < suffixCount; i++)
+        {
+            sortedWords[i] = suffixWords[suffixes[i]];
+            sortedOffsets[i] = suffixOffsets[suffixes[i]];
+        }
+
+        return new CardSearchIndex<>(sorted, words, postings, sortedWords, sortedOffsets,
+                storeBigrams, storeBigramPostings);
+    }
+
+    public int size()
+    {
+        return cards.length;
+    }
+
+    /**
+     * Returns an index of the same cards, except that every card of
+     * changed replaces the one with its id, or is added if there is none.
+     * Ids mapped to null are removed. Only the cards already in memory are
+     * indexed again, nothing is read from where they are stored.
+     */
+    public CardSearchIndex<T> update(Map<Integer, T> changed)
+    {
+        List<T> updated = new ArrayList<>(cards.length + changed.size());
+        for(T card : cards)
+        {
+            if(!changed.containsKey(card.id))
+            {
+                updated.add(card);
+            }
+        }
+
+        for(T card : changed.values())
+        {
+            if(card != null)
+            {
+                updated.add(card);
+            }
+        }
+
+        return build(updated);
+    }
+
+    /**
+     * Returns the cards matching filter, see CardFilter.matches, in
+     * display order. Filters with LIKE wildcards are not supported.
+     */
+    public List<T> search(String filter)
+    {
+        if(CardFilter.hasWildcards(filter))
+        {
+            throw new IllegalArgumentException("Wildcards are not supported: " + filter);
+        }
+
+        String[] queryWords = splitWords(filter);
+
+        BitSet candidates = null;
+        for(String queryWord : queryWords)
+        {
+            BitSet matching = findWord(queryWord);
+            if(candidates == null)
+            {
+                candidates = matching;
+            }
+            else
+            {
+                candidates.and(matching);
+            }
+
+            if(candidates.isEmpty())
+            {
+                return Collections.emptyList();
+            }
+        }
+
+        if(candidates == null)
+        {
+            // Empty or only whitespace, which every card may match
+            candidates = new BitSet(cards.length);
+            candidates.set(0, cards.length);
+        }
+
+        // Candidates share the words of the filter, check the whole filter
+        // as it may span several words
+        List<T> result = new ArrayList<>();
+        for(int position = candidates.nextSetBit(0); position >= 0; position = candidates.nextSetBit(position + 1))
+        {
+            if(CardFilter.matches(cards[position], filter))
+            {
+                result.add(cards[position]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Number of typos a fuzzy search for a filter of the given length
+     * tolerates. Short filters have to match exactly, as nearly any store
+     * is a few edits away from them.
+     */
+    public static int maxFuzzyErrors(int length)
+    {
+        if(length <= 3)
+        {
+            return 0;
+        }
+
+        return length <= 6 ? 1 : 2;
+    }
+
+    /**
+     * Returns the cards whose store contains filter with at most
+     * maxFuzzyErrors typos: letters added, removed or replaced. Starred
+     * cards come first, like in the card list, then the closest matches.
+     */
+    public List<T> searchFuzzy(String filter)
+    {
+        String pattern = toLowerAscii(filter.trim());
+        int maxErrors = maxFuzzyErrors(pattern.length());
+        if(maxErrors == 0)
+        {
+            return search(filter);
+        }
+
+        // Every typo breaks at most two letter pairs, so a match shares at
+        // least this many distinct pairs with the filter
+        int[] patternBigrams = bigrams(pattern);
+        int minShared = Math.max(1, patternBigrams.length - 2 * maxErrors);
+
+        // Positions of every shared pair, sorted so equal ones are adjacent
+        IntList shared = new IntList();
+        for(int patternBigram : patternBigrams)
+        {
+            int bigram = Arrays.binarySearch(storeBigrams, patternBigram);
+            if(bigram >= 0)
+            {
+                shared.addAll(storeBigramPostings[bigram]);
+            }
+        }
+        int[] positions = shared.toArray();
+        Arrays.sort(positions);
+
+        List<int[]> matches = new ArrayList<>();
+        for(int start = 0; start < positions.length; )
+        {
+            int end = start;
+            while(end < positions.length && positions[end] == positions[start])
+            {
+                end++;
+            }
+
+            if(end - start >= minShared)
+            {
+                int position = positions[start];
+                int distance = substringDistance(pattern, toLowerAscii(cards[position].store), maxErrors);
+                if(distance <= maxErrors)
+                {
+                    matches.add(new int[]{position, distance});
+                }
+            }
+
+            start = end;
+        }
+
+        Collections.sort(matches, new Comparator<int[]>()
+        {
+            @Override
+            public int compare(int[] a, int[] b)
+            {
+                int starA = cards[a[0]].starStatus;
+                int starB = cards[b[0]].starStatus;
+                if(starA != starB)
+                {
+                    return starB > starA ? 1 : -1;
+                }
+
+                if(a[1] != b[1])
+                {
+                    return a[1] - b[1];
+                }
+
+                return a[0] - b[0];
+            }
+        });
+
+        List<T> result = new ArrayList<>(matches.size());
+        for(int[] match : matches)
+        {
+            result.add(cards[match[0]]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the fewest typos needed for pattern to appear anywhere in
+     * text, or maxErrors + 1 if that is more than maxErrors.
+     */
+    static int substringDistance(String pattern, String text, int maxErrors)
+    {
+        // Column of the edit distance table, matches may start anywhere in text
+        int[] column = new int[pattern.length() + 1];
+        for(int i = 0; i <= pattern.length(); i++)
+        {
+            column[i] = i;
+        }
+
+        int best = column[pattern.length()];
+        for(int j = 0; j < text.length() && best > 0; j++)
+        {
+            int diagonal = column[0];
+            for(int i = 1; i <= pattern.length(); i++)
+            {
+                int above = column[i];
+                int cost = pattern.charAt(i - 1) == text.charAt(j) ? 0 : 1;
+                column[i] = Math.min(Math.min(column[i - 1] + 1, above + 1), diagonal + cost);
+                diagonal = above;
+            }
+
+            best = Math.min(best, column[pattern.length()]);
+        }
+
+        return Math.min(best, maxErrors + 1);
+    }
+
+    /**
+     * Returns the positions of the cards having a word containing part.
+     */
+    private BitSet findWord(String part)
+    {
+        BitSet result = new BitSet(cards.length);
+
+        // First suffix not before part
+        int low = 0;
+        int high = suffixWords.length;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(compareSuffix(middle, part) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        BitSet seenWords = new BitSet(words.length);
+        for(int suffix = low; suffix < suffixWords.length && startsWith(suffix, part); suffix++)
+        {
+            int word = suffixWords[suffix];
+            if(seenWords.get(word))
+            {
+                continue;
+            }
+            seenWords.set(word);
+
+            for(int position : postings[word])
+            {
+                result.set(position);
+            }
+        }
+
+        return result;
+    }
+
+    // Compares the suffix with part, only looking at the first part.length() characters
+    private int compareSuffix(int suffix, String part)
+    {
+        String word = words[suffixWords[suffix]];
+        int offset = suffixOffsets[suffix];
+
+        int length = Math.min(word.length() - offset, part.length());
+        for(int i = 0; i < length; i++)
+        {
+            char wordChar = word.charAt(offset + i);
+            char partChar = part.charAt(i);
+            if(wordChar != partChar)
+            {
+                return wordChar - partChar;
+            }
+        }
+
+        return (word.length() - offset) >= part.length() ? 0 : -1;
+    }
+
+    private boolean startsWith(int suffix, String part)
+    {
+        return compareSuffix(suffix, part) == 0;
+    }
+
+    private static void addWords(TreeMap<String, IntList> wordCards, String text, int position)
+    {
+        for(String word : splitWords(text))
+        {
+            IntList positions = wordCards.get(word);
+            if(positions == null)
+            {
+                positions = new IntList();
+                wordCards.put(word, positions);
+            }
+
+            positions.addOnce(position);
+        }
+    }
+
+    private static void addBigrams(TreeMap<Integer, IntList> bigramCards, String store, int position)
+    {
+        for(int bigram : bigrams(toLowerAscii(store)))
+        {
+            IntList positions = bigramCards.get(bigram);
+            if(positions == null)
+            {
+                positions = new IntList();
+                bigramCards.put(bigram, positions);
+            }
+
+            positions.addOnce(position);
+        }
+    }
+
+    // Distinct pairs of adjacent characters, each packed into an int
+    private static int[] bigrams(String text)
+    {
+        IntList result = new IntList();
+        for(int i = 0; i + 1 < text.length(); i++)
+        {
+            result.add((text.charAt(i) << 16) | text.charAt(i + 1));
+        }
+
+        int[] sorted = result.toArray();
+        Arrays.sort(sorted);
+
+        int distinct = 0;
+        for(int i = 0; i < sorted.length; i++)
+        {
+            if(i == 0 || sorted[i] != sorted[i - 1])
+            {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    private static String[] splitWords(String text)
+    {
+        List<String> result = new ArrayList<>();
+
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++)
+        {
+            boolean separator = i == text.length() || Character.isWhitespace(text.charAt(i));
+            if(separator && start != -1)
+            {
+                result.add(toLowerAscii(text.substring(start, i)));
+                start = -1;
+            }
+            else if(!separator && start == -1)
+            {
+                start = i;
+            }
+        }
+
+        return result.toArray(new String[0]);
+    }
+
+    private static String toLowerAscii(String text)
+    {
+        char[] chars = text.toCharArray();
+        for(int i = 0; i < chars.length; i++)
+        {
+            if(chars[i] >= 'A' && chars[i] <= 'Z')
+            {
+                chars[i] += 'a' - 'A';
+            }
+        }
+
+        return new String(chars);
+    }
+
+    static int compareIgnoreAsciiCase(String a, String b)
+    {
+        int length = Math.min(a.length(), b.length());
+        for(int i = 0; i < length; i++)
+        {
+            char charA = a.charAt(i);
+            char charB = b.charAt(i);
+            if(charA >= 'A' && charA <= 'Z')
+            {
+                charA += 'a' - 'A';
+            }
+            if(charB >= 'A' && charB <= 'Z')
+            {
+                charB += 'a' - 'A';
+            }
+            if(charA != charB)
+            {
+                return charA - charB;
+            }
+        }
+
+        return a.length() - b.length();
+    }
+
+    // Growable int array, avoids boxing every card position
+    private static class IntList
+    {
+        private int[] values = new int[2];
+        private int size = 0;
+
+        void addOnce(int value)
+        {
+            // Positions are added in ascending order
+            if(size > 0 && values[size - 1] == value)
+            {
+                return;
+            }
+
+            add(value);
+        }
+
+        void add(int value)
+        {
+            if(size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(int[] added)
+        {
+            if(size + added.length > values.length)
+            {
+                values = Arrays.copyOf(values, Math.max(size * 2, size + added.length));
+            }
+            System.arraycopy(added, 0, values, size, added.length);
+            size += added.length;
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
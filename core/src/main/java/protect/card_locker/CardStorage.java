@@ -0,0 +1,52 @@
+package protect.card_locker;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage the import and export code reads cards and groups from and
+ * writes them to. The app implements this on top of its SQLite database,
+ * benchmarks and tests can use a plain in-memory implementation.
+ */
+public interface CardStorage
+{
+    interface CardVisitor
+    {
+        void visit(CardRecord card) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Returns the ids of all groups, in display order.
+     */
+    List<String> getGroupIds();
+
+    /**
+     * Calls the visitor for every card, starred cards first and then
+     * sorted by store name.
+     */
+    void forEachCard(CardVisitor visitor) throws IOException, InterruptedException;
+
+    /**
+     * Returns the ids of all groups the given card is in.
+     */
+    List<String> getCardGroupIds(int cardId);
+
+    /**
+     * Starts a batch of writes. Nothing written before a matching
+     * setTransactionSuccessful() is kept once endTransaction() is called.
+     */
+    void beginTransaction();
+
+    void setTransactionSuccessful();
+
+    void endTransaction();
+
+    void insertGroup(String groupId);
+
+    void insertCard(CardRecord card);
+
+    /**
+     * Adds the card to the group, keeping any groups it is already in.
+     */
+    void addCardToGroup(int cardId, String groupId);
+}
@@ -0,0 +1,227 @@
+package protect.card_locker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidObjectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes cards into, and decodes them from, the query part of a share URI.
+ *
+ * Encoding follows android.net.Uri: everything except letters, digits and
+ * "_-!.~'()*" is percent-encoded as UTF-8, and "+" decodes to a space.
+ */
+public class CardUriCodec
+{
+    private static final String STORE = DatabaseSchema.Cards.STORE;
+    private static final String NOTE = DatabaseSchema.Cards.NOTE;
+    private static final String EXPIRY = DatabaseSchema.Cards.EXPIRY;
+    private static final String CARD_ID = DatabaseSchema.Cards.CARD_ID;
+    private static final String BARCODE_TYPE = DatabaseSchema.Cards.BARCODE_TYPE;
+    private static final String HEADER_COLOR = DatabaseSchema.Cards.HEADER_COLOR;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    public static String toQuery(CardRecord card)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        appendParameter(builder, STORE, card.store);
+        appendParameter(builder, NOTE, card.note);
+        if (card.expiry != null) {
+            appendParameter(builder, EXPIRY, String.valueOf(card.expiry.getTime()));
+        }
+        appendParameter(builder, CARD_ID, card.cardId);
+        appendParameter(builder, BARCODE_TYPE, card.barcodeType);
+        if(card.headerColor != null)
+        {
+            appendParameter(builder, HEADER_COLOR, card.headerColor.toString());
+        }
+        //StarStatus will not be exported
+
+        return builder.toString();
+    }
+
+    /**
+     * Parses the raw, still encoded, query of a share URI.
+     *
+     * @throws InvalidObjectException if a required field is missing or malformed
+     */
+    public static CardRecord fromQuery(String encodedQuery) throws InvalidObjectException
+    {
+        if(encodedQuery == null)
+        {
+            throw new InvalidObjectException("Not a valid import URI");
+        }
+
+        Map<String, String> parameters = parseQuery(encodedQuery);
+
+        try {
+            // These values are allowed to be null
+            Date expiry = null;
+            Integer headerColor = null;
+            Integer headerTextColor = null;
+
+            String store = parameters.get(STORE);
+            String note = parameters.get(NOTE);
+            String cardId = parameters.get(CARD_ID);
+            String barcodeType = parameters.get(BARCODE_TYPE);
+            if (store == null || note == null || cardId == null || barcodeType == null) throw new InvalidObjectException("Not a valid import URI");
+
+            String unparsedExpiry = parameters.get(EXPIRY);
+            if(unparsedExpiry != null && !unparsedExpiry.equals(""))
+            {
+                expiry = new Date(Long.parseLong(unparsedExpiry));
+            }
+            String unparsedHeaderColor = parameters.get(HEADER_COLOR);
+            if(unparsedHeaderColor != null)
+            {
+                headerColor = Integer.parseInt(unparsedHeaderColor);
+            }
+
+            return new CardRecord(-1, store, note, expiry, cardId, barcodeType, headerColor, headerTextColor, 0);
+        } catch (NumberFormatException ex) {
+            throw new InvalidObjectException("Not a valid import URI");
+        }
+    }
+
+    /**
+     * Splits the query into decoded name/value pairs. Like
+     * Uri.getQueryParameter(), the first occurrence of a name wins.
+     */
+    private static Map<String, String> parseQuery(String encodedQuery) throws InvalidObjectException
+    {
+        Map<String, String> parameters = new HashMap<>();
+
+        int start = 0;
+        while(start <= encodedQuery.length())
+        {
+            int end = encodedQuery.indexOf('&', start);
+            if(end == -1)
+            {
+                end = encodedQuery.length();
+            }
+
+            int separator = encodedQuery.indexOf('=', start);
+            if(separator == -1 || separator > end)
+            {
+                separator = end;
+            }
+
+            String name = decode(encodedQuery.substring(start, separator));
+            String value = separator < end ? decode(encodedQuery.substring(separator + 1, end)) : "";
+
+            if(!parameters.containsKey(name))
+            {
+                parameters.put(name, value);
+            }
+
+            start = end + 1;
+        }
+
+        return parameters;
+    }
+
+    private static void appendParameter(StringBuilder builder, String name, String value)
+    {
+        if(builder.length() > 0)
+        {
+            builder.append('&');
+        }
+
+        encode(builder, name);
+        builder.append('=');
+        encode(builder, value);
+    }
+
+    private static boolean isAllowed(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || "_-!.~'()*".indexOf(c) != -1;
+    }
+
+    static void encode(StringBuilder builder, String value)
+    {
+        for(int index = 0; index < value.length(); index++)
+        {
+            char c = value.charAt(index);
+
+            if(isAllowed(c))
+            {
+                builder.append(c);
+                continue;
+            }
+
+            // Encode the whole run of disallowed characters at once, so
+            // surrogate pairs stay together
+            int end = index + 1;
+            while(end < value.length() && !isAllowed(value.charAt(end)))
+            {
+                end++;
+            }
+
+            for(byte b : value.substring(index, end).getBytes(StandardCharsets.UTF_8))
+            {
+                builder.append('%');
+                builder.append(HEX_DIGITS[(b & 0xf0) >> 4]);
+                builder.append(HEX_DIGITS[b & 0xf]);
+            }
+
+            index = end - 1;
+        }
+    }
+
+    static String decode(String value) throws InvalidObjectException
+    {
+        if(value.indexOf('%') == -1 && value.indexOf('+') == -1)
+        {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(value.length());
+
+        // Consecutive escapes form one UTF-8 sequence and are decoded together
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        for(int index = 0; index < value.length(); index++)
+        {
+            char c = value.charAt(index);
+
+            if(c == '%')
+            {
+                if(index + 2 >= value.length())
+                {
+                    throw new InvalidObjectException("Truncated escape sequence");
+                }
+
+                int high = Character.digit(value.charAt(index + 1), 16);
+                int low = Character.digit(value.charAt(index + 2), 16);
+                if(high == -1 || low == -1)
+                {
+                    throw new InvalidObjectException("Invalid escape sequence");
+                }
+
+                pending.write((high << 4) | low);
+                index += 2;
+                continue;
+            }
+
+            if(pending.size() > 0)
+            {
+                builder.append(new String(pending.toByteArray(), StandardCharsets.UTF_8));
+                pending.reset();
+            }
+
+            builder.append(c == '+' ? ' ' : c);
+        }
+
+        if(pending.size() > 0)
+        {
+            builder.append(new String(pending.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package protect.card_locker;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Class for exporting the cards of a CardStorage into CSV (Comma
+ * Separate Values) format.
+ */
+public class CsvCardExporter
+{
+    public void exportData(CardStorage storage, Writer output) throws IOException, InterruptedException
+    {
+        final CSVPrinter printer = new CSVPrinter(output, CSVFormat.RFC4180);
+
+        // Print the version
+        printer.printRecord("2");
+
+        printer.println();
+
+        // Print the header for groups
+        printer.printRecord(DatabaseSchema.Groups.ID);
+
+        for(String groupId : storage.getGroupIds())
+        {
+            printer.printRecord(groupId);
+
+            if(Thread.currentThread().isInterrupted())
+            {
+                throw new InterruptedException();
+            }
+        }
+
+        // Print an empty line
+        printer.println();
+
+        // Print the header for cards
+        printer.printRecord(DatabaseSchema.Cards.ID,
+                DatabaseSchema.Cards.STORE,
+                DatabaseSchema.Cards.NOTE,
+                DatabaseSchema.Cards.EXPIRY,
+                DatabaseSchema.Cards.CARD_ID,
+                DatabaseSchema.Cards.HEADER_COLOR,
+                DatabaseSchema.Cards.BARCODE_TYPE,
+                DatabaseSchema.Cards.STAR_STATUS);
+
+        storage.forEachCard(new CardStorage.CardVisitor()
+        {
+            @Override
+            public void visit(CardRecord card) throws IOException, InterruptedException
+            {
+                printer.printRecord(card.id,
+                        card.store,
+                        card.note,
+                        card.expiry != null ? card.expiry.getTime() : "",
+                        card.cardId,
+                        card.headerColor,
+                        card.barcodeType,
+                        card.starStatus);
+
+                if(Thread.currentThread().isInterrupted())
+                {
+                    throw new InterruptedException();
+                }
+            }
+        });
+
+        // Print an empty line
+        printer.println();
+
+        // Print the header for card group mappings
+        printer.printRecord(DatabaseSchema.CardsGroups.cardID,
+                DatabaseSchema.CardsGroups.groupID);
+
+        storage.forEachCard(new CardStorage.CardVisitor()
+        {
+            @Override
+            public void visit(CardRecord card) throws IOException, InterruptedException
+            {
+                for (String groupId : storage.getCardGroupIds(card.id)) {
+                    printer.printRecord(card.id, groupId);
+                }
+
+                if(Thread.currentThread().isInterrupted())
+                {
+                    throw new InterruptedException();
+                }
+            }
+        });
+
+        printer.close();
+    }
+}
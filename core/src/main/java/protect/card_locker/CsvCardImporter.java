@@ -0,0 +1,404 @@
+package protect.card_locker;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Date;
+
+/**
+ * Class for importing cards from CSV (Comma Separate Values)
+ * formatted data into a CardStorage.
+ *
+ * The cards are expected to appear in the CSV data.
+ * A header is expected for the each table showing the names of the columns.
+ */
+public class CsvCardImporter
+{
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    /**
+     * Returns true if the given start of a stream looks like data this
+     * importer reads: a first line that is either the version line of a
+     * versioned export, or a version 1 header with the card id among its
+     * columns. A leading byte order mark is ignored.
+     */
+    public static boolean looksLikeCsv(String prefix)
+    {
+        int start = !prefix.isEmpty() && prefix.charAt(0) == BYTE_ORDER_MARK ? 1 : 0;
+        int end = start;
+        while(end < prefix.length() && prefix.charAt(end) != '\n' && prefix.charAt(end) != '\r')
+        {
+            end++;
+        }
+
+        String firstLine = prefix.substring(start, end);
+        if(firstLine.matches("[0-9]+"))
+        {
+            return true;
+        }
+
+        try
+        {
+            CSVParser parser = CSVFormat.RFC4180.parse(new StringReader(firstLine));
+            for(CSVRecord header : parser)
+            {
+                for(String field : header)
+                {
+                    if(field.trim().equals(DatabaseSchema.Cards.ID))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        catch(IOException | IllegalStateException e)
+        {
+            // Not even a valid CSV line, so not ours
+        }
+
+        return false;
+    }
+
+    public void importData(CardStorage storage, Reader input) throws IOException, FormatException, InterruptedException
+    {
+        BufferedReader bufferedReader = new BufferedReader(input);
+
+        // Some editors save a byte order mark, which is not part of the data
+        bufferedReader.mark(1);
+        if(bufferedReader.read() != BYTE_ORDER_MARK)
+        {
+            bufferedReader.reset();
+        }
+
+        bufferedReader.mark(100);
+
+        Integer version = 1;
+
+        try {
+            version = Integer.parseInt(bufferedReader.readLine());
+        } catch (NumberFormatException _e) {
+            // Assume version 1
+        }
+
+        bufferedReader.reset();
+
+        switch (version) {
+            case 1:
+                parseV1(storage, bufferedReader);
+                break;
+            case 2:
+                parseV2(storage, bufferedReader);
+                break;
+            default:
+                throw new FormatException(String.format("No code to parse version %s", version));
+        }
+
+        bufferedReader.close();
+    }
+
+    public void parseV1(CardStorage storage, BufferedReader input) throws IOException, FormatException, InterruptedException
+    {
+        final CSVParser parser = new CSVParser(input, CSVFormat.RFC4180.withHeader());
+
+        storage.beginTransaction();
+
+        try
+        {
+            for (CSVRecord record : parser)
+            {
+                importLoyaltyCard(storage, record);
+
+                if(Thread.currentThread().isInterrupted())
+                {
+                    throw new InterruptedException();
+                }
+            }
+
+            parser.close();
+            storage.setTransactionSuccessful();
+        }
+        catch(IllegalArgumentException|IllegalStateException e)
+        {
+            throw new FormatException("Issue parsing CSV data", e);
+        }
+        finally
+        {
+            storage.endTransaction();
+        }
+    }
+
+    public void parseV2(CardStorage storage, BufferedReader input) throws IOException, FormatException, InterruptedException
+    {
+        storage.beginTransaction();
+
+        Integer part = 0;
+        StringBuilder stringPart = new StringBuilder();
+
+        try {
+            while (true) {
+                String tmp = input.readLine();
+
+                if (tmp == null || tmp.isEmpty()) {
+                    switch (part) {
+                        case 0:
+                            // This is the version info, ignore
+                            break;
+                        case 1:
+                            parseV2Groups(storage, stringPart.toString());
+                            break;
+                        case 2:
+                            parseV2Cards(storage, stringPart.toString());
+                            break;
+                        case 3:
+                            parseV2CardGroups(storage, stringPart.toString());
+                            break;
+                        default:
+                            throw new FormatException("Issue parsing CSV data, too many parts for v2 parsing");
+                    }
+
+                    if (tmp == null) {
+                        break;
+                    }
+
+                    part += 1;
+                    stringPart.setLength(0);
+                } else {
+                    stringPart.append(tmp).append('\n');
+                }
+            }
+            storage.setTransactionSuccessful();
+        } catch (FormatException e) {
+            throw new FormatException("Issue parsing CSV data", e);
+        } finally {
+            storage.endTransaction();
+        }
+    }
+
+    public void parseV2Groups(CardStorage storage, String data) throws IOException, FormatException, InterruptedException
+    {
+        // Parse groups
+        final CSVParser groupParser = new CSVParser(new StringReader(data), CSVFormat.RFC4180.withHeader());
+
+        try {
+            for (CSVRecord record : groupParser) {
+                importGroup(storage, record);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new FormatException("Issue parsing CSV data", e);
+        } finally {
+            groupParser.close();
+        }
+    }
+
+    public void parseV2Cards(CardStorage storage, String data) throws IOException, FormatException, InterruptedException
+    {
+        // Parse cards
+        final CSVParser cardParser = new CSVParser(new StringReader(data), CSVFormat.RFC4180.withHeader());
+
+        try {
+            for (CSVRecord record : cardParser) {
+                importLoyaltyCard(storage, record);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new FormatException("Issue parsing CSV data", e);
+        } finally {
+            cardParser.close();
+        }
+    }
+
+    public void parseV2CardGroups(CardStorage storage, String data) throws IOException, FormatException, InterruptedException
+    {
+        // Parse card group mappings
+        final CSVParser cardGroupParser = new CSVParser(new StringReader(data), CSVFormat.RFC4180.withHeader());
+
+        try {
+            for (CSVRecord record : cardGroupParser) {
+                importCardGroupMapping(storage, record);
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new FormatException("Issue parsing CSV data", e);
+        } finally {
+            cardGroupParser.close();
+        }
+    }
+
+    /**
+     * Extract a string from the items array. The index into the array
+     * is determined by looking up the index in the fields map using the
+     * "key" as the key. If no such key exists, defaultValue is returned
+     * if it is not null. Otherwise, a FormatException is thrown.
+     */
+    private String extractString(String key, CSVRecord record, String defaultValue)
+            throws FormatException
+    {
+        String toReturn = defaultValue;
+
+        if(record.isMapped(key))
+        {
+            toReturn = record.get(key);
+        }
+        else
+        {
+            if(defaultValue == null)
+            {
+                throw new FormatException("Field not used but expected: " + key);
+            }
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Extract an integer from the items array. The index into the array
+     * is determined by looking up the index in the fields map using the
+     * "key" as the key. If no such key exists, or the data is not a valid
+     * int, a FormatException is thrown.
+     */
+    private Integer extractInt(String key, CSVRecord record, boolean nullIsOk)
+            throws FormatException
+    {
+        if(record.isMapped(key) == false)
+        {
+            throw new FormatException("Field not used but expected: " + key);
+        }
+
+        String value = record.get(key);
+        if(value.isEmpty() && nullIsOk)
+        {
+            return null;
+        }
+
+        try
+        {
+            return Integer.parseInt(record.get(key));
+        }
+        catch(NumberFormatException e)
+        {
+            throw new FormatException("Failed to parse field: " + key, e);
+        }
+    }
+
+    /**
+     * Extract a long from the items array. The index into the array
+     * is determined by looking up the index in the fields map using the
+     * "key" as the key. If no such key exists, or the data is not a valid
+     * int, a FormatException is thrown.
+     */
+    private Long extractLong(String key, CSVRecord record, boolean nullIsOk)
+            throws FormatException
+    {
+        if(record.isMapped(key) == false)
+        {
+            throw new FormatException("Field not used but expected: " + key);
+        }
+
+        String value = record.get(key);
+        if(value.isEmpty() && nullIsOk)
+        {
+            return null;
+        }
+
+        try
+        {
+            return Long.parseLong(record.get(key));
+        }
+        catch(NumberFormatException e)
+        {
+            throw new FormatException("Failed to parse field: " + key, e);
+        }
+    }
+
+    /**
+     * Import a single loyalty card into the storage.
+     */
+    private void importLoyaltyCard(CardStorage storage, CSVRecord record)
+            throws IOException, FormatException
+    {
+        int id = extractInt(DatabaseSchema.Cards.ID, record, false);
+        if(id < 0)
+        {
+            throw new FormatException("Card id must not be negative: " + id);
+        }
+
+        String store = extractString(DatabaseSchema.Cards.STORE, record, "");
+        if(store.isEmpty())
+        {
+            throw new FormatException("No store listed, but is required");
+        }
+
+        String note = extractString(DatabaseSchema.Cards.NOTE, record, "");
+        Date expiry = null;
+        try {
+            expiry = new Date(extractLong(DatabaseSchema.Cards.EXPIRY, record, true));
+        } catch (NullPointerException | FormatException e) { }
+
+        String cardId = extractString(DatabaseSchema.Cards.CARD_ID, record, "");
+        if(cardId.isEmpty())
+        {
+            throw new FormatException("No card ID listed, but is required");
+        }
+
+        String barcodeType = extractString(DatabaseSchema.Cards.BARCODE_TYPE, record, "");
+
+        Integer headerColor = null;
+
+        if(record.isMapped(DatabaseSchema.Cards.HEADER_COLOR))
+        {
+            headerColor = extractInt(DatabaseSchema.Cards.HEADER_COLOR, record, true);
+        }
+
+        int starStatus = 0;
+        try {
+            starStatus = extractInt(DatabaseSchema.Cards.STAR_STATUS, record, false);
+        } catch (FormatException _e ) {
+            // This field did not exist in versions 0.28 and before
+            // We catch this exception so we can still import old backups
+        }
+        if (starStatus != 1) starStatus = 0;
+        storage.insertCard(new CardRecord(id, store, note, expiry, cardId, barcodeType, headerColor, null, starStatus));
+    }
+
+    /**
+     * Import a single group into the storage.
+     */
+    private void importGroup(CardStorage storage, CSVRecord record)
+            throws IOException, FormatException
+    {
+        String id = extractString(DatabaseSchema.Groups.ID, record, null);
+
+        storage.insertGroup(id);
+    }
+
+    /**
+     * Import a single card to group mapping into the storage.
+     */
+    private void importCardGroupMapping(CardStorage storage, CSVRecord record)
+            throws IOException, FormatException
+    {
+        Integer cardId = extractInt(DatabaseSchema.CardsGroups.cardID, record, false);
+        if(cardId < 0)
+        {
+            throw new FormatException("Card id must not be negative: " + cardId);
+        }
+        String groupId = extractString(DatabaseSchema.CardsGroups.groupID, record, null);
+
+        storage.addCardToGroup(cardId, groupId);
+    }
+}
@@ -0,0 +1,38 @@
+package protect.card_locker;
+
+/**
+ * Table and column names of the card database.
+ *
+ * These also double as the keys of the import/export formats, so they
+ * must not change without a migration of both.
+ */
+public class DatabaseSchema
+{
+    public static class Groups
+    {
+        public static final String TABLE = "groups";
+        public static final String ID = "_id";
+        public static final String ORDER = "orderId";
+    }
+
+    public static class Cards
+    {
+        public static final String TABLE = "cards";
+        public static final String ID = "_id";
+        public static final String STORE = "store";
+        public static final String EXPIRY = "expiry";
+        public static final String NOTE = "note";
+        public static final String HEADER_COLOR = "headercolor";
+        public static final String HEADER_TEXT_COLOR = "headertextcolor";
+        public static final String CARD_ID = "cardid";
+        public static final String BARCODE_TYPE = "barcodetype";
+        public static final String STAR_STATUS = "starstatus";
+    }
+
+    public static class CardsGroups
+    {
+        public static final String TABLE = "cardsGroups";
+        public static final String cardID = "cardId";
+        public static final String groupID = "groupId";
+    }
+}
@@ -0,0 +1,114 @@
+package protect.card_locker;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Selects the cards in a combination of groups: either the cards in all of
+ * them, or the cards in any of them. A single group is a combination of
+ * one. Groups are identified by their name.
+ */
+public final class GroupFilter
+{
+    public enum Mode
+    {
+        // Cards in every group
+        ALL,
+        // Cards in at least one group
+        ANY
+    }
+
+    public final Mode mode;
+    public final Set<String> groupIds;
+
+    private GroupFilter(Mode mode, Collection<String> groupIds)
+    {
+        if(groupIds.isEmpty())
+        {
+            throw new IllegalArgumentException("A group filter needs at least one group");
+        }
+
+        // The mode of a single group makes no difference
+        this.mode = groupIds.size() == 1 ? Mode.ALL : mode;
+        this.groupIds = Collections.unmodifiableSet(new LinkedHashSet<>(groupIds));
+    }
+
+    public static GroupFilter of(String groupId)
+    {
+        return new GroupFilter(Mode.ALL, Collections.singleton(groupId));
+    }
+
+    public static GroupFilter all(Collection<String> groupIds)
+    {
+        return new GroupFilter(Mode.ALL, groupIds);
+    }
+
+    public static GroupFilter any(Collection<String> groupIds)
+    {
+        return new GroupFilter(Mode.ANY, groupIds);
+    }
+
+    /**
+     * Returns true if any of the given groups is part of this filter.
+     */
+    public boolean references(Collection<String> groups)
+    {
+        for(String groupId : groups)
+        {
+            if(groupIds.contains(groupId))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns this filter without the groups that are not in existing, or
+     * null if none of its groups is left.
+     */
+    public GroupFilter retain(Collection<String> existing)
+    {
+        Set<String> kept = new LinkedHashSet<>(groupIds);
+        kept.retainAll(existing);
+
+        if(kept.isEmpty())
+        {
+            return null;
+        }
+
+        if(kept.size() == groupIds.size())
+        {
+            return this;
+        }
+
+        return new GroupFilter(mode, kept);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(!(o instanceof GroupFilter))
+        {
+            return false;
+        }
+
+        GroupFilter other = (GroupFilter) o;
+        return mode == other.mode && groupIds.equals(other.groupIds);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * mode.hashCode() + groupIds.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return mode + groupIds.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package protect.card_locker;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Which cards are in which groups, as one bitset of card ids per group.
+ * Combining groups with a GroupFilter is then a few word-wise ANDs or ORs,
+ * however many cards there are.
+ *
+ * Card ids are small and dense as the database hands them out in order,
+ * so plain bitsets stay compact. Not thread-safe.
+ *
+ * Importers reject negative card ids, but older imports did not, so a card
+ * with a negative id may still exist. It cannot be in a bitset and is
+ * treated as being in no group.
+ */
+public class GroupMembership
+{
+    private final Map<String, BitSet> groupCards = new HashMap<>();
+
+    public void add(int cardId, String groupId)
+    {
+        if(cardId < 0)
+        {
+            return;
+        }
+
+        BitSet cards = groupCards.get(groupId);
+        if(cards == null)
+        {
+            cards = new BitSet();
+            groupCards.put(groupId, cards);
+        }
+
+        cards.set(cardId);
+    }
+
+    /**
+     * Puts the card in exactly the given groups.
+     */
+    public void setGroups(int cardId, Collection<String> groupIds)
+    {
+        removeCard(cardId);
+
+        for(String groupId : groupIds)
+        {
+            add(cardId, groupId);
+        }
+    }
+
+    public void removeCard(int cardId)
+    {
+        if(cardId < 0)
+        {
+            return;
+        }
+
+        Iterator<BitSet> groups = groupCards.values().iterator();
+        while(groups.hasNext())
+        {
+            BitSet cards = groups.next();
+            cards.clear(cardId);
+
+            if(cards.isEmpty())
+            {
+                groups.remove();
+            }
+        }
+    }
+
+    public void removeGroup(String groupId)
+    {
+        groupCards.remove(groupId);
+    }
+
+    public void renameGroup(String groupId, String newGroupId)
+    {
+        BitSet cards = groupCards.remove(groupId);
+        if(cards != null)
+        {
+            groupCards.put(newGroupId, cards);
+        }
+    }
+
+    public boolean contains(int cardId, String groupId)
+    {
+        BitSet cards = groupCards.get(groupId);
+        return cardId >= 0 && cards != null && cards.get(cardId);
+    }
+
+    /**
+     * Returns the ids of the cards selected by filter, as a new bitset
+     * the caller may change.
+     */
+    public BitSet getCards(GroupFilter filter)
+    {
+        BitSet result = null;
+
+        for(String groupId : filter.groupIds)
+        {
+            BitSet cards = groupCards.get(groupId);
+
+            if(cards == null)
+            {
+                // An empty group leaves nothing in all groups
+                if(filter.mode == GroupFilter.Mode.ALL)
+                {
+                    return new BitSet();
+                }
+
+                continue;
+            }
+
+            if(result == null)
+            {
+                result = (BitSet) cards.clone();
+            }
+            else if(filter.mode == GroupFilter.Mode.ALL)
+            {
+                result.and(cards);
+            }
+            else
+            {
+                result.or(cards);
+            }
+        }
+
+        return result != null ? result : new BitSet();
+    }
+}
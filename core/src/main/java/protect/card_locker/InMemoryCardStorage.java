@@ -0,0 +1,136 @@
+package protect.card_locker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CardStorage kept entirely in memory, for tests and benchmarks which
+ * should not depend on a database.
+ *
+ * Transactions are not isolated: a failed import leaves whatever was
+ * written before the failure in place.
+ */
+public class InMemoryCardStorage implements CardStorage
+{
+    private static final Comparator<CardRecord> CARD_ORDER = new Comparator<CardRecord>()
+    {
+        @Override
+        public int compare(CardRecord a, CardRecord b)
+        {
+            if(a.starStatus != b.starStatus)
+            {
+                return b.starStatus - a.starStatus;
+            }
+
+            return a.store.compareToIgnoreCase(b.store);
+        }
+    };
+
+    private final List<String> groups = new ArrayList<>();
+    private final Map<Integer, CardRecord> cards = new LinkedHashMap<>();
+    private final Map<Integer, List<String>> cardGroups = new TreeMap<>();
+
+    @Override
+    public List<String> getGroupIds()
+    {
+        return Collections.unmodifiableList(groups);
+    }
+
+    @Override
+    public void forEachCard(CardVisitor visitor) throws IOException, InterruptedException
+    {
+        List<CardRecord> sorted = new ArrayList<>(cards.values());
+        Collections.sort(sorted, CARD_ORDER);
+
+        for(CardRecord card : sorted)
+        {
+            visitor.visit(card);
+        }
+    }
+
+    @Override
+    public List<String> getCardGroupIds(int cardId)
+    {
+        List<String> groupIds = cardGroups.get(cardId);
+        if(groupIds == null)
+        {
+            return new ArrayList<>();
+        }
+
+        List<String> sorted = new ArrayList<>(groupIds);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Override
+    public void beginTransaction()
+    {
+    }
+
+    @Override
+    public void setTransactionSuccessful()
+    {
+    }
+
+    @Override
+    public void endTransaction()
+    {
+    }
+
+    @Override
+    public void insertGroup(String groupId)
+    {
+        if(!groups.contains(groupId))
+        {
+            groups.add(groupId);
+        }
+    }
+
+    @Override
+    public void insertCard(CardRecord card)
+    {
+        if(!cards.containsKey(card.id))
+        {
+            cards.put(card.id, card);
+        }
+    }
+
+    @Override
+    public void addCardToGroup(int cardId, String groupId)
+    {
+        List<String> groupIds = cardGroups.get(cardId);
+        if(groupIds == null)
+        {
+            groupIds = new ArrayList<>();
+            cardGroups.put(cardId, groupIds);
+        }
+
+        if(!groupIds.contains(groupId))
+        {
+            groupIds.add(groupId);
+        }
+    }
+
+    public int getCardCount()
+    {
+        return cards.size();
+    }
+
+    public CardRecord getCard(int id)
+    {
+        return cards.get(id);
+    }
+
+    public void clear()
+    {
+        groups.clear();
+        cards.clear();
+        cardGroups.clear();
+    }
+}
@@ -0,0 +1,66 @@
+package protect.card_locker;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BarcodeGeneratorTest
+{
+    @Test
+    public void toScaledRowRepeatsModules()
+    {
+        BitMatrix matrix = new BitMatrix(4, 2);
+        matrix.set(0, 0);
+        matrix.set(1, 0);
+        matrix.set(3, 0);
+        matrix.set(2, 1);
+
+        final int B = BarcodeGenerator.BLACK;
+        final int W = BarcodeGenerator.WHITE;
+
+        int[] row = new int[8];
+        BarcodeGenerator.toScaledRow(matrix, 0, 2, row);
+        assertArrayEquals(new int[]{B, B, B, B, W, W, B, B}, row);
+
+        BarcodeGenerator.toScaledRow(matrix, 1, 2, row);
+        assertArrayEquals(new int[]{W, W, W, W, B, B, W, W}, row);
+    }
+
+    @Test
+    public void scalingFactorFitsWidthAndHeight()
+    {
+        // Square matrices scale the same whichever side the width is
+        // divided by
+        assertEquals(4, BarcodeGenerator.getScalingFactor(new BitMatrix(25, 25), 100, 100));
+        assertEquals(3, BarcodeGenerator.getScalingFactor(new BitMatrix(25, 25), 100, 75));
+
+        // A wide matrix used to be scaled by 5, dividing the width by the
+        // matrix height, which made it 500 pixels wide instead of 300
+        assertEquals(3, BarcodeGenerator.getScalingFactor(new BitMatrix(100, 10), 300, 50));
+
+        // And a tall one was not scaled up at all
+        assertEquals(3, BarcodeGenerator.getScalingFactor(new BitMatrix(10, 100), 30, 300));
+    }
+
+    @Test
+    public void toScaledRowMatchesToPixels() throws Exception
+    {
+        BitMatrix matrix = BarcodeGenerator.encode("123456789", BarcodeFormat.QR_CODE, 100, 100);
+        int[] pixels = BarcodeGenerator.toPixels(matrix);
+        int width = matrix.getWidth();
+        int[] row = new int[width];
+
+        for(int y = 0; y < matrix.getHeight(); y++)
+        {
+            BarcodeGenerator.toScaledRow(matrix, y, 1, row);
+            for(int x = 0; x < width; x++)
+            {
+                assertEquals(pixels[y * width + x], row[x]);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package protect.card_locker;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BarcodeValidatorTest
+{
+    private static final BarcodeFormat[] ONE_DIMENSIONAL = {
+            BarcodeFormat.CODE_39, BarcodeFormat.CODE_128, BarcodeFormat.CODABAR,
+            BarcodeFormat.EAN_8, BarcodeFormat.EAN_13, BarcodeFormat.ITF, BarcodeFormat.UPC_A
+    };
+
+    private static final String[] CARD_IDS = {
+            "1", "12", "1234567", "12345670", "12345678", "123456789012", "4763705295336",
+            "4763705295337", "428311627547", "428311627548", "42831162754", "123456",
+            "ABC-123", "abc123", "A1234B", "A1234", "1234B", "T12+34E", "A12:34/5.6$-B",
+            "A1B2C", "hello world", "$/+%", "$/+%a", "\u00e9", "\u00f1123",
+            "12345678901234567890123456789012345678901234567890123456789012345678901234567890",
+            "123456789012345678901234567890123456789012345678901234567890123456789012345678901",
+            "abcdefghijabcdefghijabcdefghijabcdefghij"
+    };
+
+    private static boolean encodes(String cardId, BarcodeFormat format)
+    {
+        try
+        {
+            BarcodeGenerator.encode(cardId, format, 0, 0);
+            return true;
+        }
+        catch(WriterException e)
+        {
+            return false;
+        }
+    }
+
+    @Test
+    public void agreesWithEncoderFor1D()
+    {
+        for(BarcodeFormat format : ONE_DIMENSIONAL)
+        {
+            for(String cardId : CARD_IDS)
+            {
+                assertEquals(format + ": " + cardId, encodes(cardId, format),
+                        BarcodeValidator.isValid(cardId, format));
+            }
+        }
+    }
+
+    @Test
+    public void checkDigits()
+    {
+        assertTrue(BarcodeValidator.hasValidCheckDigit("4763705295336"));
+        assertFalse(BarcodeValidator.hasValidCheckDigit("4763705295337"));
+        assertTrue(BarcodeValidator.hasValidCheckDigit("428311627547"));
+        assertTrue(BarcodeValidator.hasValidCheckDigit("96385074"));
+    }
+
+    @Test
+    public void emptyIsNeverValid()
+    {
+        for(BarcodeFormat format : BarcodeFormat.values())
+        {
+            assertFalse(BarcodeValidator.isValid("", format));
+        }
+    }
+
+    @Test
+    public void twoDimensionalLimits()
+    {
+        assertTrue(BarcodeValidator.isValid("any text \u00e9", BarcodeFormat.QR_CODE));
+        assertTrue(BarcodeValidator.isValid("\u00e9", BarcodeFormat.DATA_MATRIX));
+        assertFalse(BarcodeValidator.isValid("\u20ac", BarcodeFormat.DATA_MATRIX));
+    }
+}
@@ -0,0 +1,75 @@
+package protect.card_locker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CardFilterTest
+{
+    private static CardRecord card(int id, String store, String note)
+    {
+        return new CardRecord(id, store, note, null, "cardId", "UPC_A", null, null, 0);
+    }
+
+    @Test
+    public void matchesStoreOrNote()
+    {
+        CardRecord card = card(1, "The First Store", "Initial note");
+
+        assertTrue(CardFilter.matches(card, ""));
+        assertTrue(CardFilter.matches(card, "First"));
+        assertTrue(CardFilter.matches(card, "first store"));
+        assertTrue(CardFilter.matches(card, "NOTE"));
+        assertFalse(CardFilter.matches(card, "Second"));
+        assertFalse(CardFilter.matches(card, "The First Store!"));
+    }
+
+    @Test
+    public void onlyAsciiIsCaseInsensitive()
+    {
+        // SQLite's LIKE only folds ASCII letters
+        CardRecord card = card(1, "Caf\u00e9", "");
+
+        assertTrue(CardFilter.matches(card, "CAF"));
+        assertTrue(CardFilter.matches(card, "caf\u00e9"));
+        assertFalse(CardFilter.matches(card, "CAF\u00c9"));
+    }
+
+    @Test
+    public void canNarrow()
+    {
+        assertTrue(CardFilter.canNarrow("", "s"));
+        assertTrue(CardFilter.canNarrow("st", "sto"));
+        assertTrue(CardFilter.canNarrow("to", "sto"));
+        assertTrue(CardFilter.canNarrow("ST", "sto"));
+
+        assertFalse(CardFilter.canNarrow(null, "sto"));
+        assertFalse(CardFilter.canNarrow("sto", "st"));
+        assertFalse(CardFilter.canNarrow("sta", "sto"));
+        assertFalse(CardFilter.canNarrow("st", "st%"));
+        assertFalse(CardFilter.canNarrow("s_", "s_o"));
+    }
+
+    @Test
+    public void narrowKeepsOrder()
+    {
+        List<CardRecord> cards = Arrays.asList(
+                card(3, "storeC", ""),
+                card(1, "other", "store note"),
+                card(2, "storeA", ""),
+                card(4, "other", ""));
+
+        List<CardRecord> narrowed = CardFilter.narrow(cards, "store");
+        assertEquals(3, narrowed.size());
+        assertEquals(3, narrowed.get(0).id);
+        assertEquals(1, narrowed.get(1).id);
+        assertEquals(2, narrowed.get(2).id);
+
+        assertEquals(0, CardFilter.narrow(cards, "missing").size());
+    }
+}
@@ -0,0 +1,177 @@
+package protect.card_locker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CardSearchIndexTest
+{
+    private static CardRecord card(int id, String store, String note, int starStatus)
+    {
+        return new CardRecord(id, store, note, null, "cardId", "UPC_A", null, null, starStatus);
+    }
+
+    private static List<Integer> ids(List<CardRecord> cards)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for(CardRecord card : cards)
+        {
+            ids.add(card.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void searchesInDisplayOrder()
+    {
+        CardSearchIndex<CardRecord> index = CardSearchIndex.build(Arrays.asList(
+                card(1, "storeB", "note", 0),
+                card(2, "storeA", "note", 0),
+                card(3, "storeD", "note", 1),
+                card(4, "StoreC", "note", 1),
+                card(5, "Other", "no match", 0)));
+
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList(4, 3, 5, 2, 1), ids(index.search("")));
+        assertEquals(Arrays.asList(4, 3, 2, 1), ids(index.search("store")));
+        assertEquals(Arrays.asList(4, 3, 2, 1), ids(index.search("TOR")));
+        assertEquals(Arrays.asList(5), ids(index.search("no match")));
+        assertEquals(Arrays.asList(5), ids(index.search("o mat")));
+        assertTrue(index.search("note other").isEmpty());
+        assertTrue(index.search("missing").isEmpty());
+    }
+
+    @Test
+    public void updateReplacesAddsAndRemovesCards()
+    {
+        CardSearchIndex<CardRecord> index = CardSearchIndex.build(Arrays.asList(
+                card(1, "storeB", "note", 0),
+                card(2, "storeA", "note", 0),
+                card(3, "storeC", "note", 0)));
+
+        Map<Integer, CardRecord> changed = new HashMap<>();
+        changed.put(1, card(1, "storeB", "note", 1));
+        changed.put(2, null);
+        changed.put(4, card(4, "renamed", "note", 0));
+        CardSearchIndex<CardRecord> updated = index.update(changed);
+
+        assertEquals(3, updated.size());
+        assertEquals(Arrays.asList(1, 4, 3), ids(updated.search("")));
+        assertEquals(Arrays.asList(1, 3), ids(updated.search("store")));
+        assertEquals(1, updated.search("storeB").get(0).starStatus);
+
+        // The original index is left alone
+        assertEquals(Arrays.asList(2, 1, 3), ids(index.search("")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wildcardsAreRejected()
+    {
+        CardSearchIndex.build(Collections.singletonList(card(1, "store", "", 0))).search("s%");
+    }
+
+    @Test
+    public void matchesCardFilter()
+    {
+        // Few letters and spaces, so that filters often match across words
+        String alphabet = "abAB c";
+        Random random = new Random(1);
+
+        List<CardRecord> cards = new ArrayList<>();
+        for(int id = 1; id <= 500; id++)
+        {
+            cards.add(card(id, randomText(random, alphabet, 8), randomText(random, alphabet, 6), random.nextInt(2)));
+        }
+
+        CardSearchIndex<CardRecord> index = CardSearchIndex.build(cards);
+
+        List<CardRecord> sorted = new ArrayList<>(cards);
+        Collections.sort(sorted, CardSearchIndex.CARD_ORDER);
+
+        for(int i = 0; i < 1000; i++)
+        {
+            String filter = randomText(random, alphabet, random.nextInt(5));
+            assertEquals(filter, ids(CardFilter.narrow(sorted, filter)), ids(index.search(filter)));
+        }
+    }
+
+    @Test
+    public void substringDistance()
+    {
+        assertEquals(0, CardSearchIndex.substringDistance("mart", "walmart", 2));
+        assertEquals(1, CardSearchIndex.substringDistance("starbuks", "starbucks", 2));
+        assertEquals(2, CardSearchIndex.substringDistance("walmrat", "walmart supercenter", 2));
+        assertEquals(3, CardSearchIndex.substringDistance("target", "walmart", 2));
+    }
+
+    @Test
+    public void fuzzySearchRanksStarredThenClosest()
+    {
+        CardSearchIndex<CardRecord> index = CardSearchIndex.build(Arrays.asList(
+                card(1, "Starbucks", "", 0),
+                card(2, "Starbuck Coffee", "", 0),
+                card(3, "Star Market", "", 0),
+                card(4, "Stabucks Reserve", "", 1)));
+
+        assertEquals(Arrays.asList(4, 1, 2), ids(index.searchFuzzy("starbuks")));
+        assertEquals(Arrays.asList(4, 1, 2), ids(index.searchFuzzy("STARBUCKS")));
+
+        // Too short for typos
+        assertTrue(index.searchFuzzy("sbx").isEmpty());
+        assertEquals(Arrays.asList(4, 3, 2, 1), ids(index.searchFuzzy("sta")));
+    }
+
+    @Test
+    public void fuzzySearchFindsAllNearMatches()
+    {
+        String alphabet = "abcde fgh";
+        Random random = new Random(2);
+
+        List<CardRecord> cards = new ArrayList<>();
+        for(int id = 1; id <= 500; id++)
+        {
+            cards.add(card(id, randomText(random, alphabet, 4 + random.nextInt(10)), "", 0));
+        }
+
+        CardSearchIndex<CardRecord> index = CardSearchIndex.build(cards);
+
+        for(int i = 0; i < 200; i++)
+        {
+            String filter = randomText(random, "abcdefgh", 4 + random.nextInt(6));
+            int maxErrors = CardSearchIndex.maxFuzzyErrors(filter.length());
+
+            // Without the bigram pruning every store would be checked
+            List<Integer> expected = new ArrayList<>();
+            for(CardRecord card : cards)
+            {
+                if(CardSearchIndex.substringDistance(filter, card.store, maxErrors) <= maxErrors)
+                {
+                    expected.add(card.id);
+                }
+            }
+
+            List<Integer> found = ids(index.searchFuzzy(filter));
+            Collections.sort(found);
+            assertEquals(filter, expected, found);
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int length)
+    {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < length; i++)
+        {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package protect.card_locker;
+
+import org.junit.Test;
+
+import java.io.InvalidObjectException;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CardUriCodecTest
+{
+    @Test
+    public void ensureNoDataLoss() throws InvalidObjectException
+    {
+        CardRecord card = new CardRecord(1, "store & more", "note = 100% \u00e9\ud83d\ude00", new Date(1234567890L),
+                "12345", "QR_CODE", -416706, null, 1);
+
+        CardRecord parsedCard = CardUriCodec.fromQuery(CardUriCodec.toQuery(card));
+
+        assertEquals(card.store, parsedCard.store);
+        assertEquals(card.note, parsedCard.note);
+        assertEquals(card.expiry, parsedCard.expiry);
+        assertEquals(card.cardId, parsedCard.cardId);
+        assertEquals(card.barcodeType, parsedCard.barcodeType);
+        assertEquals(card.headerColor, parsedCard.headerColor);
+        // No export of starStatus for single cards foreseen therefore 0 will be imported
+        assertEquals(0, parsedCard.starStatus);
+    }
+
+    @Test
+    public void encodeLikeAndroidUri()
+    {
+        CardRecord card = new CardRecord(1, "a b+c", "", null, "(1)*!~'_-.", "", null, null, 0);
+
+        assertEquals("store=a%20b%2Bc&note=&cardid=(1)*!~'_-.&barcodetype=", CardUriCodec.toQuery(card));
+    }
+
+    @Test
+    public void decodePlusAsSpace() throws InvalidObjectException
+    {
+        CardRecord card = CardUriCodec.fromQuery("store=a+b&note=&cardid=1&barcodetype=ITF&store=ignored");
+
+        assertEquals("a b", card.store);
+        assertNull(card.expiry);
+        assertNull(card.headerColor);
+    }
+
+    @Test
+    public void failToParseBadData()
+    {
+        String[] queries = {
+                "stare=store&note=note&cardid=12345&barcodetype=ITF",
+                "store=store&note=note&cardid=12345&barcodetype=ITF&headercolor=red",
+                "store=%4&note=note&cardid=12345&barcodetype=ITF",
+        };
+
+        for(String query : queries)
+        {
+            try
+            {
+                CardUriCodec.fromQuery(query);
+                fail("Parsed invalid query: " + query);
+            }
+            catch(InvalidObjectException e)
+            {
+                // Desired behaviour
+            }
+        }
+    }
+}
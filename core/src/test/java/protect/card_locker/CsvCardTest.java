@@ -0,0 +1,102 @@
+package protect.card_locker;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CsvCardTest
+{
+    @Test
+    public void exportImport() throws IOException, FormatException, InterruptedException
+    {
+        InMemoryCardStorage storage = new InMemoryCardStorage();
+        storage.insertGroup("group, \"1");
+        storage.insertGroup("group 2");
+        storage.insertCard(new CardRecord(1, "store, \"1", "note\nline", new Date(1000), "12345", "UPC_A", 5, null, 0));
+        storage.insertCard(new CardRecord(2, "store 2", "", null, "abc", "QR_CODE", null, null, 1));
+        storage.addCardToGroup(1, "group, \"1");
+        storage.addCardToGroup(1, "group 2");
+
+        StringWriter output = new StringWriter();
+        new CsvCardExporter().exportData(storage, output);
+
+        InMemoryCardStorage imported = new InMemoryCardStorage();
+        new CsvCardImporter().importData(imported, new StringReader(output.toString()));
+
+        assertEquals(Arrays.asList("group, \"1", "group 2"), imported.getGroupIds());
+        assertEquals(2, imported.getCardCount());
+
+        CardRecord card = imported.getCard(1);
+        assertEquals("store, \"1", card.store);
+        assertEquals("note\nline", card.note);
+        assertEquals(new Date(1000), card.expiry);
+        assertEquals("12345", card.cardId);
+        assertEquals("UPC_A", card.barcodeType);
+        assertEquals(Integer.valueOf(5), card.headerColor);
+        assertEquals(0, card.starStatus);
+
+        card = imported.getCard(2);
+        assertNull(card.expiry);
+        assertNull(card.headerColor);
+        assertEquals(1, card.starStatus);
+
+        assertEquals(Arrays.asList("group 2", "group, \"1"), imported.getCardGroupIds(1));
+        assertEquals(Collections.<String>emptyList(), imported.getCardGroupIds(2));
+    }
+
+    @Test(expected = FormatException.class)
+    public void importWithoutCardId() throws IOException, FormatException, InterruptedException
+    {
+        String csvText = DatabaseSchema.Cards.ID + "," + DatabaseSchema.Cards.STORE + "\n" +
+                "1,store\n";
+
+        new CsvCardImporter().importData(new InMemoryCardStorage(), new StringReader(csvText));
+    }
+
+    @Test(expected = FormatException.class)
+    public void importWithNegativeId() throws IOException, FormatException, InterruptedException
+    {
+        String csvText = DatabaseSchema.Cards.ID + "," + DatabaseSchema.Cards.STORE + "," + DatabaseSchema.Cards.CARD_ID + "\n" +
+                "-1,store,12345\n";
+
+        new CsvCardImporter().importData(new InMemoryCardStorage(), new StringReader(csvText));
+    }
+
+    @Test
+    public void detectsCsv()
+    {
+        assertTrue(CsvCardImporter.looksLikeCsv("2\r\n\r\n_id\r\n"));
+        assertTrue(CsvCardImporter.looksLikeCsv("_id,store,cardid\n"));
+        assertTrue(CsvCardImporter.looksLikeCsv("store,\"_id\",cardid\n"));
+        assertTrue(CsvCardImporter.looksLikeCsv("\uFEFFstore,cardid,_id\n"));
+
+        assertFalse(CsvCardImporter.looksLikeCsv("store,cardid\n_id\n"));
+        assertFalse(CsvCardImporter.looksLikeCsv("{\"_id\":1}"));
+        assertFalse(CsvCardImporter.looksLikeCsv(""));
+    }
+
+    @Test
+    public void importReorderedColumnsWithByteOrderMark() throws IOException, FormatException, InterruptedException
+    {
+        String csvText = "\uFEFF" + DatabaseSchema.Cards.STORE + "," + DatabaseSchema.Cards.CARD_ID + "," + DatabaseSchema.Cards.ID + "\n" +
+                "store,12345,7\n";
+
+        InMemoryCardStorage storage = new InMemoryCardStorage();
+        new CsvCardImporter().importData(storage, new StringReader(csvText));
+
+        assertEquals(1, storage.getCardCount());
+        CardRecord card = storage.getCard(7);
+        assertEquals("store", card.store);
+        assertEquals("12345", card.cardId);
+    }
+}
@@ -0,0 +1,115 @@
+package protect.card_locker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GroupMembershipTest
+{
+    private GroupMembership membership;
+
+    private static BitSet ids(int... ids)
+    {
+        BitSet result = new BitSet();
+        for(int id : ids)
+        {
+            result.set(id);
+        }
+        return result;
+    }
+
+    @Before
+    public void setUp()
+    {
+        membership = new GroupMembership();
+        membership.setGroups(1, Arrays.asList("Groceries", "Travel"));
+        membership.setGroups(2, Arrays.asList("Groceries"));
+        membership.setGroups(3, Arrays.asList("Travel", "Fuel"));
+        membership.setGroups(4, Arrays.asList("Pharmacy"));
+    }
+
+    @Test
+    public void combinesGroups()
+    {
+        assertEquals(ids(1, 2), membership.getCards(GroupFilter.of("Groceries")));
+        assertEquals(ids(1), membership.getCards(GroupFilter.all(Arrays.asList("Groceries", "Travel"))));
+        assertEquals(ids(3, 4), membership.getCards(GroupFilter.any(Arrays.asList("Pharmacy", "Fuel"))));
+        assertEquals(ids(1, 2, 3), membership.getCards(GroupFilter.any(Arrays.asList("Groceries", "Travel"))));
+    }
+
+    @Test
+    public void unknownGroupsHaveNoCards()
+    {
+        assertEquals(ids(), membership.getCards(GroupFilter.of("Unknown")));
+        assertEquals(ids(), membership.getCards(GroupFilter.all(Arrays.asList("Groceries", "Unknown"))));
+        assertEquals(ids(1, 2), membership.getCards(GroupFilter.any(Arrays.asList("Groceries", "Unknown"))));
+    }
+
+    @Test
+    public void resultsCanBeChanged()
+    {
+        membership.getCards(GroupFilter.of("Groceries")).clear();
+        assertEquals(ids(1, 2), membership.getCards(GroupFilter.of("Groceries")));
+    }
+
+    @Test
+    public void updatesIncrementally()
+    {
+        membership.setGroups(2, Arrays.asList("Travel"));
+        assertEquals(ids(1), membership.getCards(GroupFilter.of("Groceries")));
+        assertEquals(ids(1, 2, 3), membership.getCards(GroupFilter.of("Travel")));
+
+        membership.removeCard(1);
+        assertEquals(ids(), membership.getCards(GroupFilter.of("Groceries")));
+        assertEquals(ids(2, 3), membership.getCards(GroupFilter.of("Travel")));
+
+        membership.renameGroup("Travel", "Trips");
+        assertEquals(ids(), membership.getCards(GroupFilter.of("Travel")));
+        assertEquals(ids(2, 3), membership.getCards(GroupFilter.of("Trips")));
+
+        membership.removeGroup("Trips");
+        assertEquals(ids(3), membership.getCards(GroupFilter.any(Arrays.asList("Trips", "Fuel"))));
+        assertTrue(membership.contains(4, "Pharmacy"));
+    }
+
+    @Test
+    public void negativeIdsAreInNoGroup()
+    {
+        membership.add(-1, "Groceries");
+        membership.setGroups(-2, Arrays.asList("Travel", "Fuel"));
+        membership.removeCard(-1);
+
+        assertFalse(membership.contains(-1, "Groceries"));
+        assertEquals(ids(1, 2), membership.getCards(GroupFilter.of("Groceries")));
+        assertEquals(ids(1, 3), membership.getCards(GroupFilter.of("Travel")));
+    }
+
+    @Test
+    public void filters()
+    {
+        GroupFilter filter = GroupFilter.any(Arrays.asList("Pharmacy", "Fuel"));
+
+        assertEquals(filter, GroupFilter.any(Arrays.asList("Pharmacy", "Fuel")));
+        assertEquals(GroupFilter.of("Fuel"), GroupFilter.any(Collections.singleton("Fuel")));
+        assertTrue(filter.references(Arrays.asList("Groceries", "Fuel")));
+
+        assertSame(filter, filter.retain(Arrays.asList("Pharmacy", "Fuel", "Travel")));
+        assertEquals(GroupFilter.of("Fuel"), filter.retain(Arrays.asList("Fuel")));
+        assertNull(filter.retain(Arrays.asList("Travel")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void filterNeedsGroups()
+    {
+        GroupFilter.all(Collections.<String>emptyList());
+    }
+}